@@ -7,7 +7,9 @@ import de.unibremen.swt.see.manager.repository.ConfigRepository;
 import de.unibremen.swt.see.manager.repository.RoleRepository;
 import de.unibremen.swt.see.manager.repository.ServerRepository;
 import de.unibremen.swt.see.manager.repository.UserRepository;
+import de.unibremen.swt.see.manager.service.BlobStore;
 import de.unibremen.swt.see.manager.service.FileService;
+import de.unibremen.swt.see.manager.service.LeaderElection;
 import de.unibremen.swt.see.manager.service.ServerService;
 import de.unibremen.swt.see.manager.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -52,6 +54,11 @@ public class SeeManagerApplication {
      */
     private final ServerService serverService;
 
+    /**
+     * Determines whether this instance runs the scheduled tasks.
+     */
+    private final LeaderElection leaderElection;
+
     /**
      * The main method to run the Spring Boot application.
      *
@@ -76,6 +83,7 @@ public class SeeManagerApplication {
      * @param userRepo user repository dependency
      * @param userService user service dependency
      * @param fileService file service dependency
+     * @param blobStore blob store dependency
      * @param roleRepo role repository dependency
      * @param configRepo configuration repository dependency
      * @return the configured {@link CommandLineRunner}
@@ -88,6 +96,7 @@ public class SeeManagerApplication {
             UserRepository userRepo,
             UserService userService,
             FileService fileService,
+            BlobStore blobStore,
             RoleRepository roleRepo,
             ConfigRepository configRepo) {
         return args -> {
@@ -104,6 +113,9 @@ public class SeeManagerApplication {
                     .findByName(RoleType.ROLE_USER)
                     .orElseGet(() -> roleRepo.save(new Role(RoleType.ROLE_USER)));
 
+            blobStore.clearStagingArea();
+            fileService.migrateLegacyFiles();
+
             if (newAdminName != null && !newAdminName.isBlank() && newAdminPassword != null && !newAdminPassword.isBlank()) {
                 if (userService.getByUsername(newAdminName) != null) {
                     log.warn("Skip creating new admin user {}: account already exist", newAdminName);
@@ -117,10 +129,19 @@ public class SeeManagerApplication {
 
     /**
      * Updates all server status on a fixed interval.
+     * <p>
+     * The status is usually updated based on container events as they occur.
+     * This full update reconciles the status in case events have been
+     * missed, or if container events are disabled.
+     * <p>
+     * If multiple instances share the same database, only the elected leader
+     * updates the status.
+     *
+     * @see de.unibremen.swt.see.manager.service.ContainerEventListener
      */
-    @Scheduled(fixedRate = 60000)
+    @Scheduled(fixedRateString = "${see.app.docker.reconcile-ms}")
     public void scheduledServerStatusUpdate() {
-        if (serverService == null) {
+        if (serverService == null || !leaderElection.isLeader()) {
             return;
         }
         log.info("Updating server status...");
@@ -1,10 +1,14 @@
 package de.unibremen.swt.see.manager.config;
 
+import de.unibremen.swt.see.manager.service.BlobStore;
+import jakarta.servlet.MultipartConfigElement;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.core.models.GroupedOpenApi;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -52,6 +56,27 @@ public class WebConfig {
                 .build();
     }
 
+    /**
+     * Creates the multipart configuration for file uploads.
+     * <p>
+     * Unless configured otherwise, uploaded multipart files are written to the
+     * staging area of the blob store. This way, they can be moved into place
+     * instead of being copied again.
+     *
+     * @param properties the multipart properties of the application
+     * @param blobStore the blob store to upload files to
+     * @return the multipart configuration
+     * @throws IOException if the staging area cannot be accessed
+     */
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties properties, BlobStore blobStore)
+            throws IOException {
+        if (properties.getLocation() == null) {
+            properties.setLocation(blobStore.getStagingDirectory().toString());
+        }
+        return properties.createMultipartConfig();
+    }
+
     /**
      * Creates and configures a {@code WebMvcConfigurer} for Cross-Origin
      * Resource Sharing (CORS) settings.
@@ -2,10 +2,17 @@ package de.unibremen.swt.see.manager.config;
 
 import de.unibremen.swt.see.manager.security.AuthEntryPointJwt;
 import de.unibremen.swt.see.manager.security.AuthTokenFilter;
+import de.unibremen.swt.see.manager.security.BCryptStrengthCalibrator;
+import de.unibremen.swt.see.manager.security.BoundedPasswordEncoder;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
 import de.unibremen.swt.see.manager.security.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
@@ -16,6 +23,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -47,6 +55,39 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    /**
+     * Registry for the password hashing metrics.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Number of threads used for password hashing; {@code 0} uses one thread
+     * per available processor.
+     */
+    @Value("${see.app.passwordhashing.threads}")
+    private int passwordHashingThreads;
+
+    /**
+     * Maximum number of password hash operations waiting for a thread.
+     */
+    @Value("${see.app.passwordhashing.queue}")
+    private int passwordHashingQueue;
+
+    /**
+     * BCrypt strength for new password hashes; {@code 0} calibrates the
+     * strength at startup.
+     */
+    @Value("${see.app.passwordhashing.strength}")
+    private int passwordHashingStrength;
+
+    /**
+     * Targeted time in milliseconds for a single BCrypt hash used for
+     * calibration.
+     */
+    @Value("${see.app.passwordhashing.target-ms}")
+    private long passwordHashingTargetMs;
+
     /**
      * Creates an {@link AuthTokenFilter} bean.
      * <p>
@@ -95,15 +136,58 @@ public class WebSecurityConfig {
     /**
      * Defines the password encoder for the application.
      * <p>
-     * This method creates a {@link BCryptPasswordEncoder} for secure password
-     * hashing. It currently uses BCrypt version {@code $2b} (which is newer
-     * than {@code $2a} and {@code $2x}/{@code $2y}) and a strength of 12.
+     * This method creates a {@link DelegatingPasswordEncoder} that selects the
+     * encoder based on the prefix of encoded passwords:
+     * <ul>
+     * <li>{@code {bcrypt}}: passwords of users, see
+     * {@link #bcryptPasswordEncoder()}. This is used for new passwords and for
+     * passwords without prefix, which have been stored by earlier versions.</li>
+     * <li>{@code {sha256}}: machine credentials with high entropy, like the
+     * generated passwords of server accounts, see
+     * {@link Sha256PasswordEncoder}.</li>
+     * </ul>
      *
      * @return The {@link PasswordEncoder} to be used for password hashing
      */
     @Bean
+    @Primary
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(BCryptPasswordEncoder.BCryptVersion.$2B, 12);
+        final PasswordEncoder bcrypt = bcryptPasswordEncoder();
+        final DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of(
+                "bcrypt", bcrypt,
+                Sha256PasswordEncoder.ID, new Sha256PasswordEncoder()));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    /**
+     * Defines the password encoder for passwords of users.
+     * <p>
+     * This method creates a {@link BCryptPasswordEncoder} for secure password
+     * hashing. It currently uses BCrypt version {@code $2b} (which is newer
+     * than {@code $2a} and {@code $2x}/{@code $2y}). The strength is either
+     * configured or calibrated at startup, so that a single hash takes about
+     * the configured target time. Passwords hashed with a lower strength are
+     * upgraded on the next sign-in.
+     * <p>
+     * The encoder runs on a bounded pool of worker threads, so that hashing
+     * does not occupy all request threads and CPU cores under load.
+     *
+     * @return The {@link PasswordEncoder} to be used for user passwords
+     * @see BoundedPasswordEncoder
+     * @see BCryptStrengthCalibrator
+     * @see de.unibremen.swt.see.manager.service.PasswordUpgradeService
+     */
+    @Bean
+    public BoundedPasswordEncoder bcryptPasswordEncoder() {
+        final int threads = passwordHashingThreads > 0
+                ? passwordHashingThreads
+                : Runtime.getRuntime().availableProcessors();
+        final int strength = passwordHashingStrength > 0
+                ? passwordHashingStrength
+                : BCryptStrengthCalibrator.calibrate(passwordHashingTargetMs);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(BCryptPasswordEncoder.BCryptVersion.$2B, strength),
+                threads, passwordHashingQueue, meterRegistry);
     }
 
     /**
@@ -122,7 +206,9 @@ public class WebSecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(auth -> auth.requestMatchers("/api/v1/user/signin", "/swagger-ui/**", "/api-docs/**").permitAll().anyRequest().authenticated());
+                .authorizeHttpRequests(auth -> auth.requestMatchers("/api/v1/user/signin", "/api/v1/user/refresh", "/api/v1/user/signout", "/swagger-ui/**", "/api-docs/**", "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        .anyRequest().authenticated());
         // fix H2 database console: Refused to display ' in a frame because it set 'X-Frame-Options' to 'deny'
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
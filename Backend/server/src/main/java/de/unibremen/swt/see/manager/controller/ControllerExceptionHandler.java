@@ -0,0 +1,55 @@
+package de.unibremen.swt.see.manager.controller;
+
+import de.unibremen.swt.see.manager.security.LoginRateLimitedException;
+import de.unibremen.swt.see.manager.security.PasswordHashingRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates exceptions thrown by any controller into HTTP responses.
+ * <p>
+ * Only exceptions that may occur in many controllers are handled here; others
+ * are handled by the controllers themselves.
+ */
+@RestControllerAdvice
+public class ControllerExceptionHandler {
+
+    /**
+     * Number of seconds after which clients should retry rejected requests.
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * Handles rejected password hash operations, e.g., during sign-in or user
+     * creation under high load.
+     *
+     * @param e the exception
+     * @return {@code 503 Service Unavailable} with a {@code Retry-After}
+     * header
+     */
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ControllerUtils.wrapMessage("Server is busy. Please try again later."));
+    }
+
+    /**
+     * Handles sign-in attempts rejected by the rate limit.
+     *
+     * @param e the exception
+     * @return {@code 429 Too Many Requests} with a {@code Retry-After} header
+     */
+    @ExceptionHandler(LoginRateLimitedException.class)
+    public ResponseEntity<String> handleLoginRateLimited(LoginRateLimitedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ControllerUtils.wrapMessage("Too many sign-in attempts. Please try again later."));
+    }
+}
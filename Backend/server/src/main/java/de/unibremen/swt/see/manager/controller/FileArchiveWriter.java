@@ -0,0 +1,162 @@
+package de.unibremen.swt.see.manager.controller;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.service.FileService;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes multiple stored files as single ZIP archive to HTTP responses.
+ * <p>
+ * The archive is written on the fly, directly to the response, without
+ * creating temporary files. Each file is added as
+ * {@code <project type>/<file name>} entry. Only the last segment of the file
+ * name is used, so that entries cannot be extracted outside the target
+ * directory. Names that occur more than once get a numbered suffix, e.g.,
+ * {@code name (1).txt}.
+ * <p>
+ * Files that are already compressed, based on their file extension, are
+ * stored without compression. This requires computing their CRC-32 checksum
+ * in advance, which is cheap compared to compressing them again. Contents that
+ * are compressed at rest are added decompressed.
+ *
+ * @see ServerController#downloadFiles
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FileArchiveWriter {
+
+    /**
+     * Media type of ZIP archives.
+     */
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+
+    /**
+     * Used to access the stored file contents.
+     */
+    private final FileService fileService;
+
+    /**
+     * Writes the given files as ZIP archive to the response.
+     * <p>
+     * The {@code content-disposition} HTTP header field is set to
+     * {@code attachment} with the given archive name.
+     *
+     * @param archiveName the file name of the archive, without extension
+     * @param files the files to be added to the archive
+     * @param response the HTTP response to write to
+     * @throws IOException if a file is missing or cannot be accessed, or if
+     * the response cannot be written
+     */
+    public void write(String archiveName, List<File> files, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(ZIP_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, FileResponseWriter.CACHE_CONTROL.getHeaderValue());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(archiveName + ".zip", StandardCharsets.UTF_8).build().toString());
+
+        final ZipOutputStream zip = new ZipOutputStream(response.getOutputStream(), StandardCharsets.UTF_8);
+        final Set<String> entryNames = new HashSet<>();
+        for (File file : files) {
+            writeEntry(file, getEntryName(file, entryNames), zip);
+        }
+        zip.finish();
+    }
+
+    /**
+     * Adds the given file as entry to the archive.
+     * <p>
+     * Compressed stored contents are decompressed before they are added.
+     *
+     * @param file the file to be added
+     * @param entryName the name of the entry
+     * @param zip the archive to add the file to
+     * @throws IOException if the file cannot be read or the archive cannot be
+     * written
+     */
+    private void writeEntry(File file, String entryName, ZipOutputStream zip) throws IOException {
+        final ZipEntry entry = new ZipEntry(entryName);
+        final long lastModified = FileResponseWriter.getLastModified(file);
+        if (lastModified >= 0) {
+            entry.setTime(lastModified);
+        }
+        if (FileService.isCompressedFormat(file.getName())) {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(file.getSize());
+            entry.setCompressedSize(file.getSize());
+            entry.setCrc(checksum(file));
+        }
+
+        log.debug("Adding file {} to archive as {}", file.getId(), entry.getName());
+        zip.putNextEntry(entry);
+        try (InputStream in = fileService.openContent(file)) {
+            in.transferTo(zip);
+        }
+        zip.closeEntry();
+    }
+
+    /**
+     * Determines a unique entry name for the given file.
+     * <p>
+     * The file name is reduced to its last path segment. Files without a
+     * usable name are named after their ID. If the name has already been used,
+     * ignoring case, a number is appended to the base name.
+     *
+     * @param file the file to be added
+     * @param entryNames the lower-case entry names used so far; the new name
+     * is added
+     * @return the entry name
+     */
+    static String getEntryName(File file, Set<String> entryNames) {
+        String name = file.getName() != null ? file.getName() : "";
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+            name = String.valueOf(file.getId());
+        }
+
+        final String directory = file.getProjectType() + "/";
+        final int extensionIndex = name.lastIndexOf('.');
+        final String baseName = extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+        final String extension = extensionIndex > 0 ? name.substring(extensionIndex) : "";
+
+        String entryName = directory + name;
+        for (int i = 1; !entryNames.add(entryName.toLowerCase(Locale.ROOT)); i++) {
+            entryName = directory + baseName + " (" + i + ")" + extension;
+        }
+        return entryName;
+    }
+
+    /**
+     * Computes the CRC-32 checksum of the file content.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    private long checksum(File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (InputStream in = fileService.openContent(file)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -4,15 +4,12 @@ import de.unibremen.swt.see.manager.model.File;
 import de.unibremen.swt.see.manager.service.FileService;
 import de.unibremen.swt.see.manager.service.ServerService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.ContentDisposition;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -39,6 +36,11 @@ public class FileController {
      */
     private final ServerService serverService;
 
+    /**
+     * Writes file content to responses.
+     */
+    private final FileResponseWriter fileResponseWriter;
+
     /**
      * Deletes the file with the specified ID.
      * 
@@ -63,70 +65,73 @@ public class FileController {
 
     /**
      * Retrieves the file with the specified ID.
+     * <p>
+     * The response carries {@code ETag} and {@code Last-Modified} headers, so
+     * that conditional requests are answered with {@code 304 Not Modified}.
      * 
      * @param id the ID of the file to retrieve
      * @return {@code 200 OK} with the file metadata as payload if the file
-     * exists, or {@code 400 Bad Request} if the file does not exist, or
+     * exists, or {@code 304 Not Modified} if the client's copy is up to date,
+     * or {@code 400 Bad Request} if the file does not exist, or
      * {@code 401 Unauthorized} if access cannot be granted.
      */
     @GetMapping("/get")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessFile(principal.id, #id)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessFile(principal, #id)")
     public ResponseEntity<?> getFile(@RequestParam("id") UUID id) {
         File file = fileService.get(id);
         if (file == null) {
             return ResponseEntity.badRequest().body(ControllerUtils.wrapMessage("File with specified ID does not exist!"));
         }
-        return ResponseEntity.ok().body(file);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(FileResponseWriter.CACHE_CONTROL)
+                .lastModified(FileResponseWriter.getLastModified(file));
+        final String eTag = FileResponseWriter.getETag(file);
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder.body(file);
     }
 
     /**
      * Downloads the actual file content by the specified file ID.
+     * <p>
+     * Byte range requests are supported so that clients can resume interrupted
+     * downloads or fetch the file in parallel chunks. Conditional requests are
+     * supported so that clients can skip downloading identical copies.
      *
      * @param id the ID of the file to retrieve
+     * @param request the HTTP request, used to evaluate range headers
+     * @param response the HTTP response the file content is written to
      * @return {@code 200 OK} with the file content as payload if the file
-     * exists and can be accessed, or {@code 400 Bad Request} if the file does
+     * exists and can be accessed, or {@code 304 Not Modified} if the client's
+     * copy is up to date, or {@code 206 Partial Content} with the
+     * requested parts of the file, or {@code 416 Range Not Satisfiable} if the
+     * requested ranges are invalid, or {@code 400 Bad Request} if the file does
      * not exist, or {@code 500 Internal Server Error} if there is an I/O error
      * while accessing the file, or {@code 401 Unauthorized} if access cannot be
      * granted.
+     * @see FileResponseWriter
      */
     @GetMapping("/download")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessFile(principal.id, #id)")
-    public ResponseEntity<?> downloadFile(@RequestParam("id") UUID id) {
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessFile(principal, #id)")
+    public ResponseEntity<?> downloadFile(@RequestParam("id") UUID id, HttpServletRequest request, HttpServletResponse response) {
         File file = fileService.get(id);
         if (file == null) {
             return ResponseEntity.badRequest().body(ControllerUtils.wrapMessage("File with specified ID does not exist!"));
         }
 
         try {
-            return buildResponseEntity(file, true);
+            fileResponseWriter.write(file, true, request, response);
         } catch (IOException e) {
+            if (response.isCommitted()) {
+                log.debug("Download of file {} aborted: {}", id, e.getMessage());
+                return null;
+            }
+            response.reset();
             return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error reading file."));
         }
-    }
-
-    /**
-     * Builds the {@code ResponseEntity} that can be used to stream given file.
-     * <p>
-     * If {@code attachment} is {@code true}, the {@code content-disposition}
-     * HTTP header field is set to {@code attachment}, so that the client will
-     * usually display a "save as…" dialog.
-     *
-     * @param file the file to be used in the response
-     * @param attachment if a "save as…" dialog should be triggered
-     * @return the {@code ResponseEntity} with the given file
-     * @throws IOException if the file is missing or cannot be accessed
-     */
-    private ResponseEntity<Resource> buildResponseEntity(File file, boolean attachment) throws IOException {
-        Resource resource = new FileSystemResource(fileService.getPath(file));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentLength(file.getSize());
-        if (attachment) {
-            headers.setContentDisposition(ContentDisposition.attachment().filename(file.getName()).build());
-        }
-
-        return ResponseEntity.ok().headers(headers).<Resource>body(resource);
+        // The response has been written directly.
+        return null;
     }
 
 }
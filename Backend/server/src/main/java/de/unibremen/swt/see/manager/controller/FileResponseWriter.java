@@ -0,0 +1,540 @@
+package de.unibremen.swt.see.manager.controller;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.service.FileService;
+import de.unibremen.swt.see.manager.service.StorageCodec;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Writes stored file content to HTTP responses.
+ * <p>
+ * This class implements the byte range handling of
+ * <a href="https://www.rfc-editor.org/rfc/rfc9110#name-range-requests">RFC
+ * 9110</a> for file downloads. Clients can resume interrupted downloads or
+ * fetch a file in several chunks in parallel using the {@code Range} header.
+ * The {@code If-Range} header is honored so that a resumed download falls back
+ * to the complete content if the file has changed in the meantime.
+ * <p>
+ * Conditional requests are answered based on the content digest of the file,
+ * which is used as strong entity tag, and its creation time. Clients that
+ * already have an identical copy receive {@code 304 Not Modified} instead of
+ * the content.
+ * <p>
+ * File contents are served from an in-memory cache if they fit into it. Of
+ * other files, only the requested parts are read from the file system. If the
+ * servlet container supports it, single parts and complete files are handed
+ * over to the container to be sent with {@code sendfile}, so that the content
+ * is copied by the operating system without passing the JVM heap. Otherwise,
+ * the content is copied through the servlet output stream.
+ * <p>
+ * Files that are stored compressed are sent as they are, with the
+ * corresponding {@code Content-Encoding}, if the client accepts the content
+ * coding. Otherwise, they are decompressed on the fly.
+ *
+ * @see FileController
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FileResponseWriter {
+
+    /**
+     * The unit of the supported ranges.
+     */
+    private static final String BYTES_UNIT = "bytes";
+
+    /**
+     * Line separator used in multipart responses.
+     */
+    private static final String CRLF = "\r\n";
+
+    /**
+     * Cache directive for file responses.
+     * <p>
+     * Clients may keep copies, but need to revalidate them on each use.
+     */
+    static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    /**
+     * Request attribute set by Tomcat if the connector supports
+     * {@code sendfile}.
+     */
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+    /**
+     * Request attribute to pass the canonical path of the file to be sent to
+     * Tomcat.
+     */
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+    /**
+     * Request attribute to pass the start position (inclusive) of the part to
+     * be sent to Tomcat.
+     */
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+    /**
+     * Request attribute to pass the end position (exclusive) of the part to be
+     * sent to Tomcat.
+     */
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Minimum number of bytes to be sent with {@code sendfile}.
+     * <p>
+     * Smaller parts are cheaper to send through the regular output buffer.
+     * This is the same threshold Tomcat uses for static resources.
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Whether file content should be sent with {@code sendfile} if supported by
+     * the servlet container.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.filestorage.sendfile}")
+    private boolean sendfileEnabled;
+
+    /**
+     * Used to resolve the location of stored files.
+     */
+    private final FileService fileService;
+
+    /**
+     * Writes the content of the given file to the response.
+     * <p>
+     * If the conditional headers of the request ({@code If-None-Match},
+     * {@code If-Modified-Since}, etc.) indicate that the client's copy is up to
+     * date, only the status {@code 304 Not Modified} is sent.
+     * <p>
+     * Depending on the {@code Range} and {@code If-Range} headers of the
+     * request, the response contains either the complete file
+     * ({@code 200 OK}), a single part ({@code 206 Partial Content}), or
+     * multiple parts as {@code multipart/byteranges} (also
+     * {@code 206 Partial Content}). If the requested ranges cannot be
+     * satisfied, {@code 416 Range Not Satisfiable} is sent.
+     * <p>
+     * If {@code attachment} is {@code true}, the {@code content-disposition}
+     * HTTP header field is set to {@code attachment}, so that the client will
+     * usually display a "save as…" dialog.
+     *
+     * @param file the file to be sent
+     * @param attachment if a "save as…" dialog should be triggered
+     * @param request the HTTP request
+     * @param response the HTTP response to write to
+     * @throws IOException if the file is missing or cannot be accessed, or if
+     * the response cannot be written
+     */
+    public void write(File file, boolean attachment, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+        final StorageCodec codec = StorageCodec.forContentEncoding(file.getEncoding());
+        if (codec != StorageCodec.NONE) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (!acceptsEncoding(request, codec.getContentEncoding())) {
+                writeDecoded(file, attachment, request, response);
+                return;
+            }
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+        }
+
+        final Path path = fileService.getPath(file);
+        final FileSystemResource resource = new FileSystemResource(path);
+        final long length = resource.contentLength();
+        final String eTag = getETag(file, codec);
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, getLastModified(file))) {
+            return;
+        }
+        setContentDisposition(file, attachment, response);
+
+        final ByteBuffer content = fileService.getCachedContent(file);
+        final String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isRangeValid(file, eTag, request)) {
+            writeFull(path, content, length, request, response);
+            return;
+        }
+
+        final List<ResourceRegion> regions;
+        try {
+            regions = HttpRange.toResourceRegions(HttpRange.parseRanges(rangeHeader), resource);
+        } catch (IllegalArgumentException e) {
+            log.debug("Unsatisfiable range request for file {}: {}", file.getId(), e.getMessage());
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+            return;
+        }
+
+        if (regions.isEmpty()) {
+            writeFull(path, content, length, request, response);
+        } else if (regions.size() == 1) {
+            writeSingleRange(path, content, length, regions.get(0), request, response);
+        } else {
+            writeMultipleRanges(path, content, length, regions, response);
+        }
+    }
+
+    /**
+     * Writes the decompressed content of the given file to the response.
+     * <p>
+     * This is used for files that are stored compressed if the client does not
+     * accept the content coding. Range requests are not supported in this
+     * case, so that the complete file is sent.
+     *
+     * @param file the file to be sent
+     * @param attachment if a "save as…" dialog should be triggered
+     * @param request the HTTP request
+     * @param response the HTTP response to write to
+     * @throws IOException if the file is missing or cannot be accessed, or if
+     * the response cannot be written
+     */
+    private void writeDecoded(File file, boolean attachment, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        if (new ServletWebRequest(request, response).checkNotModified(getETag(file), getLastModified(file))) {
+            return;
+        }
+        setContentDisposition(file, attachment, response);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(file.getSize());
+        try (InputStream in = fileService.openContent(file)) {
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    /**
+     * Sets the {@code content-disposition} HTTP header field to
+     * {@code attachment} if requested.
+     *
+     * @param file the file to be sent
+     * @param attachment if a "save as…" dialog should be triggered
+     * @param response the HTTP response
+     */
+    private static void setContentDisposition(File file, boolean attachment, HttpServletResponse response) {
+        if (attachment) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(file.getName()).build().toString());
+        }
+    }
+
+    /**
+     * Checks if the client accepts the given content coding.
+     * <p>
+     * Evaluates the {@code Accept-Encoding} headers of the request. Codings
+     * with a quality value of zero are considered not acceptable.
+     *
+     * @param request the HTTP request
+     * @param encoding the content coding
+     * @return {@code true} if the content coding is acceptable, or
+     * {@code false} otherwise
+     */
+    private static boolean acceptsEncoding(HttpServletRequest request, String encoding) {
+        boolean wildcard = false;
+        final Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String element : headers.nextElement().split(",")) {
+                final String[] parts = element.split(";");
+                final String coding = parts[0].trim();
+                double quality = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    final String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (coding.equalsIgnoreCase(encoding)
+                        || ("gzip".equals(encoding) && coding.equalsIgnoreCase("x-gzip"))) {
+                    return quality > 0;
+                }
+                if (coding.equals("*")) {
+                    wildcard = quality > 0;
+                }
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Evaluates the {@code If-Range} precondition of the request.
+     * <p>
+     * The range request is only valid if there is no {@code If-Range} header,
+     * or if its value matches the current state of the file. Entity tags are
+     * compared using the strong comparison function.
+     *
+     * @param file the requested file
+     * @param eTag the entity tag of the selected representation
+     * @param request the HTTP request
+     * @return {@code true} if the range request should be served, or
+     * {@code false} if the complete file should be sent instead
+     */
+    private boolean isRangeValid(File file, String eTag, HttpServletRequest request) {
+        final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        if (file.getCreationTime() == null) {
+            return false;
+        }
+
+        final long ifRangeDate;
+        try {
+            ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have a precision of seconds
+        final long lastModified = file.getCreationTime().toEpochSecond() * 1000;
+        return ifRangeDate == lastModified;
+    }
+
+    /**
+     * Returns the entity tag of the given file.
+     * <p>
+     * The entity tag is derived from the content digest, so that identical
+     * content always results in the same tag.
+     *
+     * @param file the file
+     * @return the quoted strong entity tag, or {@code null} if the file has no
+     * digest
+     */
+    public static String getETag(File file) {
+        if (file.getDigest() == null) {
+            return null;
+        }
+        return "\"" + file.getDigest() + "\"";
+    }
+
+    /**
+     * Returns the entity tag of the given file as stored with given codec.
+     * <p>
+     * Compressed representations get a different entity tag than the
+     * uncompressed content.
+     *
+     * @param file the file
+     * @param codec the codec of the representation
+     * @return the quoted strong entity tag, or {@code null} if the file has no
+     * digest
+     */
+    private static String getETag(File file, StorageCodec codec) {
+        if (codec == StorageCodec.NONE || file.getDigest() == null) {
+            return getETag(file);
+        }
+        return "\"" + file.getDigest() + "-" + codec.getContentEncoding() + "\"";
+    }
+
+    /**
+     * Returns the point in time the content of given file was last modified.
+     * <p>
+     * Stored files are never modified, so this is the creation time.
+     *
+     * @param file the file
+     * @return the milliseconds since epoch, or {@code -1} if unknown
+     */
+    public static long getLastModified(File file) {
+        if (file.getCreationTime() == null) {
+            return -1;
+        }
+        return file.getCreationTime().toInstant().toEpochMilli();
+    }
+
+    /**
+     * Writes the complete file to the response.
+     *
+     * @param path the path of the stored file
+     * @param content the cached content of the file, or {@code null} if it
+     * needs to be read from the file system
+     * @param length the length of the file in bytes
+     * @param request the HTTP request
+     * @param response the HTTP response to write to
+     * @throws IOException if the file cannot be read or the response cannot be
+     * written
+     */
+    private void writeFull(Path path, ByteBuffer content, long length, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(length);
+        send(path, content, 0, length, request, response);
+    }
+
+    /**
+     * Writes a single part of the file to the response.
+     *
+     * @param path the path of the stored file
+     * @param content the cached content of the file, or {@code null} if it
+     * needs to be read from the file system
+     * @param length the length of the file in bytes
+     * @param region the part of the file to be sent
+     * @param request the HTTP request
+     * @param response the HTTP response to write to
+     * @throws IOException if the file cannot be read or the response cannot be
+     * written
+     */
+    private void writeSingleRange(Path path, ByteBuffer content, long length, ResourceRegion region,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(region, length));
+        response.setContentLengthLong(region.getCount());
+        send(path, content, region.getPosition(), region.getCount(), request, response);
+    }
+
+    /**
+     * Sends a part of the file as response body.
+     * <p>
+     * If the content is not cached, the servlet container supports
+     * {@code sendfile}, and the part is large enough, the file is handed over
+     * to the container, which sends it after the request has been processed.
+     * Otherwise, the part is transferred directly.
+     *
+     * @param path the path of the stored file
+     * @param content the cached content of the file, or {@code null} if it
+     * needs to be read from the file system
+     * @param start the position of the first byte to be sent
+     * @param count the number of bytes to be sent
+     * @param request the HTTP request
+     * @param response the HTTP response to write to
+     * @throws IOException if the file cannot be read or the response cannot be
+     * written
+     */
+    private void send(Path path, ByteBuffer content, long start, long count, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        if (content == null && sendfileEnabled && count >= SENDFILE_MIN_SIZE
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, start + count);
+            return;
+        }
+        transferRegion(path, content, start, count, response.getOutputStream());
+    }
+
+    /**
+     * Writes multiple parts of the file to the response as
+     * {@code multipart/byteranges}.
+     *
+     * @param path the path of the stored file
+     * @param content the cached content of the file, or {@code null} if it
+     * needs to be read from the file system
+     * @param length the length of the file in bytes
+     * @param regions the parts of the file to be sent
+     * @param response the HTTP response to write to
+     * @throws IOException if the file cannot be read or the response cannot be
+     * written
+     */
+    private void writeMultipleRanges(Path path, ByteBuffer content, long length, List<ResourceRegion> regions,
+            HttpServletResponse response) throws IOException {
+        final String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        final ServletOutputStream out = response.getOutputStream();
+        for (ResourceRegion region : regions) {
+            final String partHeader = CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(region, length) + CRLF
+                    + CRLF;
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            transferRegion(path, content, region.getPosition(), region.getCount(), out);
+        }
+        out.write((CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Transfers a part of the file to given output stream.
+     * <p>
+     * If the content is cached, the part is copied from memory. Otherwise, the
+     * bytes in front of the region are skipped without being read.
+     * <p>
+     * This is not a zero-copy transfer. The servlet output stream is no
+     * channel backed by a file descriptor, so {@link FileChannel#transferTo}
+     * falls back to reading the file into a heap buffer and writing it to the
+     * stream. Only {@code sendfile}, if supported by the servlet container,
+     * avoids copying the content through the JVM.
+     *
+     * @param path the path of the stored file
+     * @param content the cached content of the file, or {@code null} if it
+     * needs to be read from the file system
+     * @param start the position of the first byte to be transferred
+     * @param count the number of bytes to be transferred
+     * @param out the stream to transfer to
+     * @throws IOException if the file cannot be read or the stream cannot be
+     * written
+     */
+    private static void transferRegion(Path path, ByteBuffer content, long start, long count, OutputStream out)
+            throws IOException {
+        final WritableByteChannel target = Channels.newChannel(out);
+        if (content != null) {
+            final ByteBuffer region = content.slice(Math.toIntExact(start), Math.toIntExact(count));
+            while (region.hasRemaining()) {
+                target.write(region);
+            }
+            return;
+        }
+
+        final long end = start + count;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = start;
+            while (position < end) {
+                final long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new EOFException("Unexpected end of file: " + path);
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Builds the value of the {@code Content-Range} header for given region.
+     *
+     * @param region the part of the file
+     * @param length the complete length of the file in bytes
+     * @return the header value
+     */
+    private static String contentRange(ResourceRegion region, long length) {
+        final long start = region.getPosition();
+        final long end = start + region.getCount() - 1;
+        return BYTES_UNIT + " " + start + "-" + end + "/" + length;
+    }
+}
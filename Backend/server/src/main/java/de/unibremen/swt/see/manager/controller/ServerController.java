@@ -3,21 +3,30 @@ package de.unibremen.swt.see.manager.controller;
 import de.unibremen.swt.see.manager.model.File;
 import de.unibremen.swt.see.manager.model.RoleType;
 import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.model.ServerOperation;
 import de.unibremen.swt.see.manager.model.User;
 import de.unibremen.swt.see.manager.security.UserDetailsImpl;
 import de.unibremen.swt.see.manager.service.AccessControlService;
+import de.unibremen.swt.see.manager.service.ServerOperationService;
 import de.unibremen.swt.see.manager.service.ServerService;
 import de.unibremen.swt.see.manager.service.UserService;
+import de.unibremen.swt.see.manager.util.LimitedInputStream;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.net.URI;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Handles HTTP requests for the /server endpoint.
@@ -36,6 +45,11 @@ public class ServerController {
      */
     private final ServerService serverService;
 
+    /**
+     * Executes start, stop, and delete operations asynchronously.
+     */
+    private final ServerOperationService serverOperationService;
+
     /**
      * Used to check if a user has access to a server.
      * <p>
@@ -49,6 +63,20 @@ public class ServerController {
      */
     private final UserService userService;
 
+    /**
+     * Writes file archives to HTTP responses.
+     */
+    private final FileArchiveWriter fileArchiveWriter;
+
+    /**
+     * The maximum size of files uploaded as raw request body.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.upload.max-bytes}")
+    private long maxUploadBytes;
+
     /**
      * Retrieves metadata of the server identified by the specified ID.
      *
@@ -57,7 +85,7 @@ public class ServerController {
      * {@code 401 Unauthorized} if access cannot be granted.
      */
     @GetMapping("/")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessServer(principal.id, #id)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessServer(principal, #id)")
     public ResponseEntity<?> get(@RequestParam("id") UUID id) {
         return ResponseEntity.ok().body(serverService.get(id));
     }
@@ -126,77 +154,133 @@ public class ServerController {
         return ResponseEntity.ok().body(responseFile);
     }
 
+    /**
+     * Adds a file to an existing server, reading the content from the request
+     * body.
+     * <p>
+     * In contrast to {@link #addFile(UUID, String, MultipartFile)}, the request
+     * body is streamed directly into the file storage without being buffered
+     * in a temporary file first. As the multipart size limit does not apply,
+     * the body is limited to the configured maximum upload size while it is
+     * streamed.
+     *
+     * @param serverId the ID of the server
+     * @param projectType {@code String} representation of a {@code ProjectType}
+     * value
+     * @param name the name of the file
+     * @param request the HTTP request containing the file content as body
+     * @return {@code 200 OK} with the file metadata object as payload, or
+     * {@code 413 Payload Too Large} if the body exceeds the maximum upload
+     * size, or {@code 500 Internal Server Error} if the file could not be
+     * persisted, or {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @PutMapping("/addFile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> addFile(
+            @RequestParam("id") UUID serverId,
+            @RequestParam("projectType") String projectType,
+            @RequestParam("name") String name,
+            HttpServletRequest request) {
+        if (request.getContentLengthLong() > maxUploadBytes) {
+            return payloadTooLarge();
+        }
+
+        File responseFile;
+        try (LimitedInputStream body = new LimitedInputStream(request.getInputStream(), maxUploadBytes)) {
+            responseFile = serverService.addFile(serverId, projectType, name, request.getContentType(), body);
+            if (body.isLimitExceeded()) {
+                return payloadTooLarge();
+            }
+        } catch (IOException e) {
+            log.error("Unable to read request body: ", e);
+            responseFile = null;
+        }
+        if (responseFile == null) {
+            return ResponseEntity.internalServerError().build();
+        }
+        return ResponseEntity.ok().body(responseFile);
+    }
+
+    /**
+     * Builds the response for uploads exceeding the maximum upload size.
+     *
+     * @return {@code 413 Payload Too Large} with an error message as payload
+     */
+    private ResponseEntity<?> payloadTooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ControllerUtils.wrapMessage("File exceeds the maximum size of " + maxUploadBytes + " bytes."));
+    }
+
     /**
      * Deletes the server with the specified ID.
      * <p>
-     * Deletes the server along with its files.
+     * Deletes the server along with its files. The server is deleted
+     * asynchronously; the progress can be retrieved using
+     * {@link #getOperation(UUID)}.
      *
      * @param id the ID of the server to delete
-     * @return {@code 200 OK}, or {@code 404 Not Found} if the server does not
-     * exist, or {@code 500 Internal Server Error} if the server is busy or
-     * could not be deleted, or {@code 401 Unauthorized} access cannot be
-     * granted.
+     * @return {@code 202 Accepted} with the queued operation as payload, or
+     * {@code 404 Not Found} if the server does not exist, or
+     * {@code 401 Unauthorized} access cannot be granted.
      */
     @DeleteMapping("/delete")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> delete(@RequestParam("id") UUID id) {
-        try {
-            serverService.delete(id);
-        } catch (EntityNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        } catch (IllegalStateException e) {
-            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage(e.getMessage()));
-        } catch (IOException ex) {
-            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error during file deletion!"));
-        }
-
-        return ResponseEntity.noContent().build();
+        return submit(id, ServerOperation.Type.DELETE);
     }
 
     /**
      * Start the server with the specified ID.
+     * <p>
+     * The server is started asynchronously; the progress can be retrieved
+     * using {@link #getOperation(UUID)}.
      *
      * @param id the ID of the server to start
-     * @return {@code 200 OK}, or {@code 404 Not Found} if the server does not
-     * exist, or {@code 500 Internal Server Error} if the server is busy or
-     * already online, or {@code 401 Unauthorized} if access cannot be granted.
+     * @return {@code 202 Accepted} with the queued operation as payload, or
+     * {@code 404 Not Found} if the server does not exist, or
+     * {@code 401 Unauthorized} if access cannot be granted.
      */
     @PostMapping("/start")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> start(@RequestParam("id") UUID id) {
-        try {
-            serverService.start(id);
-        } catch (EntityNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        } catch (IllegalStateException e) {
-            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage(e.getMessage()));
-        } catch (IOException ex) {
-            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error accessing server files!"));
-        }
-
-        return ResponseEntity.noContent().build();
+        return submit(id, ServerOperation.Type.START);
     }
 
     /**
      * Stop the server with the specified ID.
+     * <p>
+     * The server is stopped asynchronously; the progress can be retrieved
+     * using {@link #getOperation(UUID)}.
      *
      * @param id the ID of the server to stop
-     * @return {@code 200 OK}, or {@code 404 Not Found} if the server does not
-     * exist, or {@code 500 Internal Server Error} if the server is busy or
-     * already stopped, or {@code 401 Unauthorized} if access cannot be granted.
+     * @return {@code 202 Accepted} with the queued operation as payload, or
+     * {@code 404 Not Found} if the server does not exist, or
+     * {@code 401 Unauthorized} if access cannot be granted.
      */
     @PostMapping("/stop")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> stop(@RequestParam("id") UUID id) {
+        return submit(id, ServerOperation.Type.STOP);
+    }
+
+    /**
+     * Retrieves the progress of a start, stop, or delete operation.
+     * <p>
+     * Completed operations can be retrieved for a limited time.
+     *
+     * @param id the ID of the operation
+     * @return {@code 200 OK} with the operation as payload, or
+     * {@code 404 Not Found} if the operation does not exist, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @GetMapping("/operation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getOperation(@RequestParam("id") UUID id) {
         try {
-            serverService.stop(id);
+            return ResponseEntity.ok().body(serverOperationService.get(id));
         } catch (EntityNotFoundException e) {
             return ResponseEntity.notFound().build();
-        } catch (IllegalStateException e) {
-            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage(e.getMessage()));
         }
-
-        return ResponseEntity.noContent().build();
     }
 
     /**
@@ -207,9 +291,74 @@ public class ServerController {
      * {@code 401 Unauthorized} if access cannot be granted.
      */
     @GetMapping("/files")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessServer(principal.id, #id)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessServer(principal, #id)")
     public ResponseEntity<?> getFiles(@RequestParam("id") UUID id) {
         return ResponseEntity.ok().body(serverService.getFilesForServer(id));
     }
 
+    /**
+     * Downloads all files of the server with the specified ID as single ZIP
+     * archive.
+     * <p>
+     * The archive contains an entry {@code <project type>/<file name>} for
+     * each file. It is streamed while being created, so that clients can fetch
+     * a complete Code City configuration with a single request.
+     *
+     * @param id the ID of the server
+     * @param response the HTTP response the archive is written to
+     * @return {@code 200 OK} with the ZIP archive as payload, or
+     * {@code 404 Not Found} if the server does not exist, or
+     * {@code 500 Internal Server Error} if there is an I/O error while
+     * accessing the files, or {@code 401 Unauthorized} if access cannot be
+     * granted.
+     * @see FileArchiveWriter
+     */
+    @GetMapping("/files/download")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER') and @accessControlService.canAccessServer(principal, #id)")
+    public ResponseEntity<?> downloadFiles(@RequestParam("id") UUID id, HttpServletResponse response) {
+        final Server server = serverService.get(id);
+        if (server == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        final String archiveName = server.getName() == null || server.getName().isBlank()
+                ? server.getId().toString()
+                : server.getName();
+        try {
+            fileArchiveWriter.write(archiveName, serverService.getFilesForServer(id), response);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                log.error("Download of files of server {} aborted: ", id, e);
+                return null;
+            }
+            response.reset();
+            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error reading files."));
+        }
+        // The response has been written directly.
+        return null;
+    }
+
+    /**
+     * Queues an operation on a server.
+     *
+     * @param id the ID of the server
+     * @param type the kind of the operation
+     * @return {@code 202 Accepted} with the queued operation as payload and
+     * its status URL as location, or {@code 404 Not Found} if the server does
+     * not exist
+     */
+    private ResponseEntity<?> submit(UUID id, ServerOperation.Type type) {
+        final ServerOperation operation;
+        try {
+            operation = serverOperationService.submit(id, type);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+        final URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/server/operation")
+                .queryParam("id", operation.getId())
+                .build()
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(operation);
+    }
 }
@@ -0,0 +1,185 @@
+package de.unibremen.swt.see.manager.controller;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.service.UploadService;
+import de.unibremen.swt.see.manager.service.UploadSession;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Handles HTTP requests for the /upload endpoint.
+ * <p>
+ * This REST controller exposes the resumable upload protocol. Files are
+ * uploaded in consecutive chunks, so that an interrupted upload can be
+ * continued instead of being restarted:
+ * <ol>
+ * <li>{@code POST /create} starts an upload and returns its state.</li>
+ * <li>{@code PUT /chunk} appends the request body at the given offset. After
+ * a connection loss, {@code GET /} returns the offset to continue from.</li>
+ * <li>{@code POST /finish} registers the uploaded file with its server.</li>
+ * </ol>
+ * <p>
+ * As chunks are sent as raw request bodies, the multipart size limit does not
+ * apply. Uploads are kept in memory of the instance they were started on, so
+ * this protocol is not available if cluster coordination is enabled.
+ *
+ * @see UploadService
+ */
+@RestController
+@RequestMapping("/api/v1/upload")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadController {
+
+    /**
+     * Handle upload-related operations and business logic.
+     */
+    private final UploadService uploadService;
+
+    /**
+     * Starts a new upload of a file for a server.
+     *
+     * @param serverId the ID of the server
+     * @param projectType {@code String} representation of a {@code ProjectType}
+     * value
+     * @param name the name of the file
+     * @param contentType the media type of the file
+     * @param size the total size of the file in bytes, if known
+     * @return {@code 200 OK} with the upload state as payload, or
+     * {@code 404 Not Found} if the server does not exist, or
+     * {@code 400 Bad Request} if the project type or size is invalid, or
+     * {@code 501 Not Implemented} if cluster coordination is enabled, or
+     * {@code 500 Internal Server Error} if the upload cannot be prepared, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @PostMapping("/create")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> create(
+            @RequestParam("id") UUID serverId,
+            @RequestParam("projectType") String projectType,
+            @RequestParam("name") String name,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "size", required = false) Long size) {
+        try {
+            return ResponseEntity.ok().body(uploadService.create(serverId, projectType, name, contentType, size));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ControllerUtils.wrapMessage(e.getMessage()));
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(ControllerUtils.wrapMessage(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Unable to create upload for server {}: ", serverId, e);
+            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error preparing upload."));
+        }
+    }
+
+    /**
+     * Retrieves the state of the upload with the specified ID.
+     * <p>
+     * The {@code offset} of the state denotes where the next chunk needs to
+     * start.
+     *
+     * @param id the ID of the upload
+     * @return {@code 200 OK} with the upload state as payload, or
+     * {@code 404 Not Found} if the upload does not exist or has expired, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @GetMapping("/")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> get(@RequestParam("id") UUID id) {
+        final UploadSession session = uploadService.get(id);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().body(session);
+    }
+
+    /**
+     * Appends the request body as chunk to the upload with the specified ID.
+     *
+     * @param id the ID of the upload
+     * @param offset the position of the chunk within the file
+     * @param request the HTTP request containing the chunk as body
+     * @return {@code 200 OK} with the updated upload state as payload, or
+     * {@code 404 Not Found} if the upload does not exist or has expired, or
+     * {@code 409 Conflict} with the upload state as payload if the offset does
+     * not match or the chunk exceeds the announced size, or
+     * {@code 500 Internal Server Error} if the chunk cannot be stored, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @PutMapping("/chunk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> writeChunk(
+            @RequestParam("id") UUID id,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok().body(uploadService.writeChunk(id, offset, request.getInputStream()));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.debug("Rejected chunk for upload {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(uploadService.get(id));
+        } catch (IOException e) {
+            log.warn("Chunk of upload {} interrupted: {}", id, e.getMessage());
+            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error storing chunk."));
+        }
+    }
+
+    /**
+     * Finishes the upload with the specified ID and adds the file to its
+     * server.
+     *
+     * @param id the ID of the upload
+     * @return {@code 200 OK} with the file metadata object as payload, or
+     * {@code 404 Not Found} if the upload or server does not exist, or
+     * {@code 409 Conflict} if the upload is incomplete, or
+     * {@code 500 Internal Server Error} if the file could not be persisted, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @PostMapping("/finish")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> finish(@RequestParam("id") UUID id) {
+        try {
+            final File file = uploadService.finish(id);
+            return ResponseEntity.ok().body(file);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ControllerUtils.wrapMessage(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Unable to finish upload {}: ", id, e);
+            return ResponseEntity.internalServerError().body(ControllerUtils.wrapMessage("Error persisting file."));
+        }
+    }
+
+    /**
+     * Cancels the upload with the specified ID.
+     *
+     * @param id the ID of the upload
+     * @return {@code 204 No Content}, or {@code 404 Not Found} if the upload
+     * does not exist, or {@code 409 Conflict} if a chunk is being written, or
+     * {@code 401 Unauthorized} if access cannot be granted.
+     */
+    @DeleteMapping("/cancel")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> cancel(@RequestParam("id") UUID id) {
+        try {
+            uploadService.cancel(id);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ControllerUtils.wrapMessage(e.getMessage()));
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -8,12 +8,20 @@ import de.unibremen.swt.see.manager.controller.response.MessageResponse;
 import de.unibremen.swt.see.manager.model.RoleType;
 import de.unibremen.swt.see.manager.model.User;
 import de.unibremen.swt.see.manager.security.JwtUtils;
+import de.unibremen.swt.see.manager.security.LoginRateLimiter;
+import de.unibremen.swt.see.manager.security.TokenRevocationList;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
 import de.unibremen.swt.see.manager.security.UserDetailsImpl;
+import de.unibremen.swt.see.manager.service.PasswordUpgradeService;
+import de.unibremen.swt.see.manager.service.RefreshTokenService;
 import de.unibremen.swt.see.manager.service.UserService;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -52,6 +60,31 @@ public class UserController {
      */
     private final JwtUtils jwtUtils;
 
+    /**
+     * Used to revoke the authentication token on sign-out.
+     */
+    private final TokenRevocationList revocationList;
+
+    /**
+     * Upgrades outdated password hashes after sign-in.
+     */
+    private final PasswordUpgradeService passwordUpgradeService;
+
+    /**
+     * Issues and rotates refresh tokens.
+     */
+    private final RefreshTokenService refreshTokenService;
+
+    /**
+     * Provides the details of users refreshing their tokens.
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Limits the rate of sign-in attempts.
+     */
+    private final LoginRateLimiter loginRateLimiter;
+
     /**
      * Retrieves user metadata of the authenticated user.
      *
@@ -215,42 +248,108 @@ public class UserController {
 
     /**
      * Sign in to the app.
+     * <p>
+     * If the password hash of the user is outdated, it is upgraded in the
+     * background.
+     * <p>
+     * Besides the short-lived authentication token, a refresh token is issued
+     * that can be exchanged for new tokens using {@link #refresh}.
+     * <p>
+     * The number of attempts per remote address and per username is limited
+     * before the password is verified.
      *
      * @param loginRequest login metadata object
+     * @param request the HTTP request used to determine the remote address
      * @return {@code 200 OK} with the logged-in user metadata object as payload
-     *         and cookie with an authentication token,
+     *         and cookies with an authentication token and a refresh token,
+     *         or {@code 429 Too Many Requests} if too many attempts have been
+     *         made,
      *         or {@code 401 Unauthorized} if access cannot be granted.
      * @see de.unibremen.swt.see.manager.controller.request.LoginRequest
      */
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request) {
+        loginRateLimiter.acquire(request.getRemoteAddr(), loginRequest.getUsername());
         Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
         SecurityContextHolder.getContext().setAuthentication(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        passwordUpgradeService.upgradeIfOutdated(userDetails, loginRequest.getPassword());
         ResponseCookie jwtCookie = jwtUtils.generateJwtCookie(userDetails);
+        ResponseCookie refreshCookie = jwtUtils.generateRefreshCookie(refreshTokenService.issue(userDetails.getId()));
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.SET_COOKIE, jwtCookie.toString())
+                .header(HttpHeaders.SET_COOKIE, refreshCookie.toString())
                 .body(userService.getByUsername(userDetails.getUsername()));
     }
 
     /**
-     * Sign out off the app.
+     * Issues new tokens in exchange for a refresh token.
      * <p>
-     * Currently, this only clears the cookie (if client complies).
+     * This allows clients to stay signed in after the authentication token
+     * has expired without sending the password again. The refresh token can
+     * only be used once; it is replaced by the new refresh token.
+     *
+     * @param request the HTTP request containing the refresh token
+     * @return {@code 200 OK} with the user metadata object as payload and
+     *         cookies with a new authentication token and refresh token,
+     *         or {@code 401 Unauthorized} if the refresh token is missing,
+     *         invalid, expired, or has already been used.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(HttpServletRequest request) {
+        final String refreshToken = jwtUtils.getRefreshTokenFromCookies(request);
+        final RefreshTokenService.Rotation rotation = refreshToken != null
+                ? refreshTokenService.rotate(refreshToken)
+                : null;
+        if (rotation == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .header(HttpHeaders.SET_COOKIE, jwtUtils.getCleanRefreshCookie().toString())
+                    .body(new MessageResponse("Invalid refresh token!"));
+        }
+
+        UserDetailsImpl userDetails = userDetailsCache.get(rotation.user().getUsername());
+        ResponseCookie jwtCookie = jwtUtils.generateJwtCookie(userDetails);
+        ResponseCookie refreshCookie = jwtUtils.generateRefreshCookie(rotation.token());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, jwtCookie.toString())
+                .header(HttpHeaders.SET_COOKIE, refreshCookie.toString())
+                .body(userService.getByUsername(userDetails.getUsername()));
+    }
+
+    /**
+     * Sign out off the app.
      * <p>
-     * <b>This does not invalidate the authentication token on server side!</b>
+     * The authentication token is revoked on server side and the cookie is
+     * cleared (if client complies). Revocations are kept in memory only and
+     * are lost when the server restarts, unless cluster coordination is
+     * enabled. The refresh token is deleted.
      *
+     * @param request the HTTP request containing the authentication token
      * @return {@code 200 OK} with a cookie to clear token on client,
      *         or {@code 401 Unauthorized} if access cannot be granted.
      * @see de.unibremen.swt.see.manager.controller.request.LoginRequest
      */
     @PostMapping("/signout")
-    public ResponseEntity<?> logoutUser() {
-        // FIXME This does not invalidate the token on server side!
+    public ResponseEntity<?> logoutUser(HttpServletRequest request) {
+        final String jwt = jwtUtils.getJwtFromCookies(request);
+        if (jwt != null) {
+            try {
+                revocationList.revokeToken(jwtUtils.parseJwtToken(jwt));
+            } catch (JwtException | IllegalArgumentException e) {
+                log.debug("Unable to revoke token on sign-out: {}", e.getMessage());
+            }
+        }
+        final String refreshToken = jwtUtils.getRefreshTokenFromCookies(request);
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
         ResponseCookie cookie = jwtUtils.getCleanJwtCookie();
         return ResponseEntity.ok()
                 .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                .header(HttpHeaders.SET_COOKIE, jwtUtils.getCleanRefreshCookie().toString())
                 .body(new MessageResponse("You've been signed out!"));
     }
 }
@@ -14,7 +14,10 @@ import lombok.Setter;
  */
 @Getter
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+    @Index(name = "idx_files_digest", columnList = "digest"),
+    @Index(name = "idx_files_server_id", columnList = "server_id")
+})
 @RequiredArgsConstructor
 public class File {
 
@@ -55,6 +58,43 @@ public class File {
     @Column(name = "size")
     private long size;
 
+    /**
+     * The SHA-256 digest of the file content.
+     * <p>
+     * The digest is computed by the file service while the file is stored and
+     * is represented as a lower-case hexadecimal string. It serves as strong
+     * entity tag so that clients can validate their cached copies.
+     * <p>
+     * Might be {@code null} for files that were stored before digests were
+     * introduced.
+     */
+    @Setter
+    @Column(name = "digest", length = 64)
+    private String digest;
+
+    /**
+     * The codec used to compress the stored content.
+     * <p>
+     * The value is an HTTP content coding, such as {@code gzip}, or
+     * {@code null} if the content is stored uncompressed.
+     *
+     * @see de.unibremen.swt.see.manager.service.StorageCodec
+     */
+    @Setter
+    @Column(name = "encoding", length = 16)
+    private String encoding;
+
+    /**
+     * The size of the stored content.
+     * <p>
+     * This differs from {@link #size} if the content is stored compressed.
+     * Might be {@code null} for files that were stored before compression was
+     * introduced, in which case it equals {@link #size}.
+     */
+    @Setter
+    @Column(name = "stored_size")
+    private Long storedSize;
+
     /**
      * The intended purpose of the file.
      * <p>
@@ -0,0 +1,51 @@
+package de.unibremen.swt.see.manager.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents a time-limited lease on a named resource that is shared by all
+ * instances of the back-end using the same database.
+ * <p>
+ * A lease is held by at most one instance at a time until it expires or is
+ * released. Each time the lease is acquired, its fencing token is
+ * incremented, so that writes of a holder whose lease has expired in the
+ * meantime can be recognized and rejected.
+ * <p>
+ * Released leases are not deleted but expired, so that fencing tokens never
+ * decrease.
+ *
+ * @see de.unibremen.swt.see.manager.service.LeaseService
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "leases")
+public class Lease {
+
+    /**
+     * The name of the leased resource.
+     */
+    @Id
+    @Column(name = "name", length = 100, updatable = false)
+    private String name;
+
+    /**
+     * ID of the back-end instance that acquired the lease last.
+     */
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    /**
+     * The fencing token, incremented each time the lease is acquired.
+     */
+    @Column(name = "token", nullable = false)
+    private long token;
+
+    /**
+     * The point in time in milliseconds since the epoch the lease expires.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
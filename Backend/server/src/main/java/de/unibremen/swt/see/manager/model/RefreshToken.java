@@ -0,0 +1,79 @@
+package de.unibremen.swt.see.manager.model;
+
+import jakarta.persistence.*;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents a refresh token that allows a user to obtain new access tokens
+ * without signing in again.
+ * <p>
+ * Only the SHA-256 hash of the token is stored, so that tokens cannot be used
+ * if the database is leaked. Each token can only be used once: it is replaced
+ * by a new token of the same family when it is used. Tokens that have been
+ * used are kept until they expire to detect reuse, e.g., because a token has
+ * been stolen. The time of use is recorded to tolerate concurrent requests
+ * using the same token.
+ *
+ * @see de.unibremen.swt.see.manager.service.RefreshTokenService
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_tokens_family", columnList = "family"),
+    @Index(name = "idx_refresh_tokens_user_id", columnList = "user_id")
+})
+public class RefreshToken {
+
+    /**
+     * ID of the refresh token.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id", updatable = false)
+    private UUID id;
+
+    /**
+     * The SHA-256 hash of the token as lower-case hexadecimal string.
+     */
+    @Column(name = "token_hash", length = 64, unique = true, nullable = false, updatable = false)
+    private String tokenHash;
+
+    /**
+     * ID shared by all tokens that descend from the same sign-in.
+     */
+    @Column(name = "family", nullable = false, updatable = false)
+    private UUID family;
+
+    /**
+     * The user this token has been issued to.
+     * <p>
+     * The user is always needed to issue new tokens, so it is loaded along
+     * with the token.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "user_id", updatable = false)
+    private User user;
+
+    /**
+     * The point in time this token expires.
+     */
+    @Column(name = "expiration_time", nullable = false)
+    private ZonedDateTime expirationTime;
+
+    /**
+     * Whether this token has already been exchanged for a new one.
+     */
+    @Column(name = "used", nullable = false)
+    private boolean used;
+
+    /**
+     * The point in time this token has been exchanged for a new one, or
+     * {@code null} if it has not been used yet.
+     */
+    @Column(name = "used_time")
+    private ZonedDateTime usedTime;
+}
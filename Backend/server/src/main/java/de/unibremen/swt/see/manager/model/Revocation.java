@@ -0,0 +1,43 @@
+package de.unibremen.swt.see.manager.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents the revocation of authentication tokens that is shared by all
+ * instances of the back-end using the same database.
+ * <p>
+ * Revocations are only persisted if cluster coordination is enabled. They are
+ * kept until the affected tokens have expired.
+ *
+ * @see de.unibremen.swt.see.manager.security.TokenRevocationList
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "revocations")
+public class Revocation {
+
+    /**
+     * The revoked subject, i.e., the ID of a single token prefixed with
+     * {@code token:}, or the username of a user prefixed with {@code user:}.
+     */
+    @Id
+    @Column(name = "subject", length = 100, updatable = false)
+    private String subject;
+
+    /**
+     * The point in time in milliseconds since the epoch the revocation took
+     * place.
+     */
+    @Column(name = "revoked_at", nullable = false)
+    private long revokedAt;
+
+    /**
+     * The point in time in milliseconds since the epoch after which all
+     * affected tokens have expired.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
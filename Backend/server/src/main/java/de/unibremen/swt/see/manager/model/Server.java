@@ -127,6 +127,20 @@ public class Server {
     @Setter
     private ZonedDateTime stopTime;
 
+    /**
+     * The highest fencing token of a server lease used to modify this server.
+     * <p>
+     * Only used if cluster coordination is enabled. Modifications with a
+     * lower token stem from an instance whose lease has expired and are
+     * rejected.
+     *
+     * @see de.unibremen.swt.see.manager.repository.ServerRepository#fence(UUID, long)
+     */
+    @Setter
+    @JsonIgnore
+    @Column(name = "fencing_token")
+    private Long fencingToken;
+
 
     /**
      * Generates the timestamp for the {@link creationTime}.
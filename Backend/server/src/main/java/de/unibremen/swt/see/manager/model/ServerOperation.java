@@ -0,0 +1,151 @@
+package de.unibremen.swt.see.manager.model;
+
+import jakarta.persistence.*;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.Getter;
+
+/**
+ * Represents an asynchronous operation on a server, e.g., starting it.
+ * <p>
+ * Operations are stored in the database, so that clients can poll their
+ * progress from any instance of the back-end. Instances are serialized to
+ * report the progress to clients.
+ *
+ * @see de.unibremen.swt.see.manager.service.ServerOperationService
+ */
+@Entity
+@Getter
+@Table(name = "server_operations")
+public class ServerOperation {
+
+    /**
+     * The kind of an operation.
+     */
+    public enum Type {
+        START, STOP, DELETE
+    }
+
+    /**
+     * The progress of an operation.
+     */
+    public enum Status {
+        /**
+         * The operation waits for execution.
+         */
+        QUEUED,
+        /**
+         * The operation is being executed.
+         */
+        RUNNING,
+        /**
+         * The operation has completed successfully.
+         */
+        SUCCEEDED,
+        /**
+         * The operation has failed; the reason is given by the message.
+         */
+        FAILED
+    }
+
+    /**
+     * ID of the operation.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id", updatable = false)
+    private UUID id;
+
+    /**
+     * ID of the server the operation is executed on.
+     */
+    @Column(name = "server_id", nullable = false, updatable = false)
+    private UUID serverId;
+
+    /**
+     * The kind of the operation.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", length = 10, nullable = false, updatable = false)
+    private Type type;
+
+    /**
+     * The point in time the operation has been requested.
+     */
+    @Column(name = "creation_time", nullable = false, updatable = false)
+    private ZonedDateTime creationTime = now();
+
+    /**
+     * The current progress of the operation.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 10, nullable = false)
+    private Status status = Status.QUEUED;
+
+    /**
+     * The reason why the operation failed, or {@code null}.
+     */
+    @Column(name = "message")
+    private String message;
+
+    /**
+     * The point in time the operation has completed, or {@code null} if it is
+     * still queued or running.
+     */
+    @Column(name = "finish_time")
+    private ZonedDateTime finishTime;
+
+    /**
+     * Default constructor for JPA.
+     */
+    protected ServerOperation() {}
+
+    /**
+     * Creates a new queued operation.
+     *
+     * @param serverId the ID of the server the operation is executed on
+     * @param type the kind of the operation
+     */
+    public ServerOperation(UUID serverId, Type type) {
+        this.serverId = serverId;
+        this.type = type;
+    }
+
+    /**
+     * Marks the operation as running.
+     */
+    public void running() {
+        status = Status.RUNNING;
+    }
+
+    /**
+     * Marks the operation as completed.
+     *
+     * @param failure the reason why the operation failed, or {@code null} if
+     * it succeeded
+     */
+    public void finish(String failure) {
+        message = failure;
+        finishTime = now();
+        status = failure == null ? Status.SUCCEEDED : Status.FAILED;
+    }
+
+    /**
+     * Checks whether the operation has completed, successfully or not.
+     *
+     * @return {@code true} if the operation has completed
+     */
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    /**
+     * Returns the current time in UTC.
+     *
+     * @return the current time
+     */
+    private static ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+}
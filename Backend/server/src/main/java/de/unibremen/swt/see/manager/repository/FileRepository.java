@@ -7,7 +7,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository interface for managing {@link File} entities.
@@ -47,6 +51,28 @@ public interface FileRepository extends JpaRepository<File, UUID> {
      */
     Optional<File> findByServerIdAndProjectType(UUID serverId, ProjectType projectType);
 
+    /**
+     * Retrieves the ID of the server a file is associated with.
+     * <p>
+     * Only the foreign key is selected, so that neither the file nor the
+     * server entity is loaded.
+     *
+     * @param fileId the ID of the file
+     * @return an {@link Optional} containing the server ID if the file exists,
+     * or an empty {@code Optional} if no such file exists
+     */
+    @Query("SELECT f.server.id FROM File f WHERE f.id = :fileId")
+    Optional<UUID> findServerIdById(@Param("fileId") UUID fileId);
+
+    /**
+     * Checks if a file with given name is associated with the given server.
+     *
+     * @param server the server to check
+     * @param name the name of the file
+     * @return {@code true} if such a file exists, else {@code false}
+     */
+    boolean existsByServerAndName(Server server, String name);
+
     /**
      * Deletes all file entities from the database that are associated with the
      * given server.
@@ -55,4 +81,20 @@ public interface FileRepository extends JpaRepository<File, UUID> {
      */
     void deleteByServer(Server server);
 
+    /**
+     * Counts the file entities referencing the content with given digest and
+     * encoding.
+     * <p>
+     * The count is executed in a separate transaction, as it is used to decide
+     * whether shared content can be deleted after the surrounding transaction
+     * has been completed.
+     *
+     * @param digest the digest of the content
+     * @param encoding the encoding of the stored content, or {@code null} if
+     * stored uncompressed
+     * @return the number of files referencing the stored content
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    long countByDigestAndEncoding(String digest, String encoding);
+
 }
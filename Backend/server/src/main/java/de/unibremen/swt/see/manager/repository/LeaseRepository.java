@@ -0,0 +1,75 @@
+package de.unibremen.swt.see.manager.repository;
+
+import de.unibremen.swt.see.manager.model.Lease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for managing {@link Lease} entities.
+ * <p>
+ * Leases are only modified by conditional single statements, so that
+ * concurrent instances cannot both acquire the same lease. The statements do
+ * not rely on database-specific locking. Acquiring a lease uses an upsert
+ * ({@code INSERT … ON CONFLICT … DO UPDATE}), which is supported by SQLite and
+ * PostgreSQL.
+ *
+ * @see Lease
+ */
+@Repository
+public interface LeaseRepository extends JpaRepository<Lease, String> {
+
+    /**
+     * Acquires a lease unless it is held.
+     * <p>
+     * A new lease is created with fencing token {@code 1}. An existing lease
+     * is only acquired if it has expired, in which case its fencing token is
+     * incremented. Both cases are handled by a single statement, so that
+     * concurrent attempts neither violate the primary key nor require a
+     * separate query.
+     *
+     * @param name the name of the lease
+     * @param owner the ID of the acquiring instance
+     * @param now the current time in milliseconds since the epoch
+     * @param expiresAt the new expiration time in milliseconds since the epoch
+     * @return {@code 1} if the lease has been acquired, or {@code 0} if it is
+     * held
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO leases (name, owner, token, expires_at) VALUES (:name, :owner, 1, :expiresAt) "
+            + "ON CONFLICT (name) DO UPDATE SET owner = excluded.owner, token = leases.token + 1, "
+            + "expires_at = excluded.expires_at WHERE leases.expires_at <= :now",
+            nativeQuery = true)
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+            @Param("now") long now, @Param("expiresAt") long expiresAt);
+
+    /**
+     * Extends a lease if it is still held with the given fencing token.
+     *
+     * @param name the name of the lease
+     * @param token the fencing token of the holder
+     * @param now the current time in milliseconds since the epoch
+     * @param expiresAt the new expiration time in milliseconds since the epoch
+     * @return {@code 1} if the lease has been extended, or {@code 0} if it has
+     * expired or been acquired by another holder
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Lease l SET l.expiresAt = :expiresAt "
+            + "WHERE l.name = :name AND l.token = :token AND l.expiresAt > :now")
+    int renew(@Param("name") String name, @Param("token") long token,
+            @Param("now") long now, @Param("expiresAt") long expiresAt);
+
+    /**
+     * Releases a lease if it is still held with the given fencing token.
+     *
+     * @param name the name of the lease
+     * @param token the fencing token of the holder
+     * @return {@code 1} if the lease has been released, or {@code 0} if it has
+     * been acquired by another holder
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Lease l SET l.expiresAt = 0 WHERE l.name = :name AND l.token = :token")
+    int release(@Param("name") String name, @Param("token") long token);
+}
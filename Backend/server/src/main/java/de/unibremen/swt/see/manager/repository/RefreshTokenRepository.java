@@ -0,0 +1,99 @@
+package de.unibremen.swt.see.manager.repository;
+
+import de.unibremen.swt.see.manager.model.RefreshToken;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for managing {@link RefreshToken} entities.
+ * <p>
+ * This interface extends {@link JpaRepository} to provide CRUD operations for
+ * {@link RefreshToken} entities.
+ *
+ * @see RefreshToken
+ */
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
+
+    /**
+     * Retrieves a refresh token by its hash.
+     *
+     * @param tokenHash the SHA-256 hash of the token
+     * @return an {@link Optional} containing the token if found, or an empty
+     * {@code Optional} otherwise
+     */
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Marks a refresh token as used if it has not been used yet.
+     * <p>
+     * This is done in a single statement, so that a token cannot be used twice
+     * by concurrent requests.
+     *
+     * @param id the ID of the token
+     * @param time the point in time the token is used
+     * @return {@code 1} if the token has been marked, or {@code 0} if it has
+     * already been used
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.used = true, t.usedTime = :time WHERE t.id = :id AND t.used = false")
+    int markUsed(@Param("id") UUID id, @Param("time") ZonedDateTime time);
+
+    /**
+     * Retrieves the point in time a refresh token has been used.
+     * <p>
+     * The value is always read from the database, as the token might have
+     * been used by a concurrent request after it has been loaded.
+     *
+     * @param id the ID of the token
+     * @return an {@link Optional} containing the time of use, or an empty
+     * {@code Optional} if the token does not exist or the time is unknown
+     */
+    @Query("SELECT t.usedTime FROM RefreshToken t WHERE t.id = :id")
+    Optional<ZonedDateTime> findUsedTimeById(@Param("id") UUID id);
+
+    /**
+     * Checks if any token of a family has been used after the given time.
+     *
+     * @param family the ID of the family
+     * @param time the point in time
+     * @return {@code true} if such a token exists, else {@code false}
+     */
+    boolean existsByFamilyAndUsedTimeAfter(UUID family, ZonedDateTime time);
+
+    /**
+     * Deletes all refresh tokens of a family.
+     *
+     * @param family the ID of the family
+     * @return the number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.family = :family")
+    int deleteByFamily(@Param("family") UUID family);
+
+    /**
+     * Deletes all refresh tokens of a user.
+     *
+     * @param userId the ID of the user
+     * @return the number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.user.id = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Deletes all refresh tokens that expired before the given time.
+     *
+     * @param time the point in time
+     * @return the number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.expirationTime < :time")
+    int deleteExpired(@Param("time") ZonedDateTime time);
+}
@@ -0,0 +1,27 @@
+package de.unibremen.swt.see.manager.repository;
+
+import de.unibremen.swt.see.manager.model.Revocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for managing {@link Revocation} entities.
+ *
+ * @see Revocation
+ */
+@Repository
+public interface RevocationRepository extends JpaRepository<Revocation, String> {
+
+    /**
+     * Deletes all revocations whose affected tokens have expired.
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return the number of deleted revocations
+     */
+    @Modifying
+    @Query("DELETE FROM Revocation r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") long now);
+}
@@ -0,0 +1,46 @@
+package de.unibremen.swt.see.manager.repository;
+
+import de.unibremen.swt.see.manager.model.ServerOperation;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for managing {@link ServerOperation} entities.
+ *
+ * @see ServerOperation
+ */
+@Repository
+public interface ServerOperationRepository extends JpaRepository<ServerOperation, UUID> {
+
+    /**
+     * Marks all operations that have been requested before the given time but
+     * never completed, e.g., because the executing instance stopped, as
+     * failed.
+     *
+     * @param time the point in time
+     * @param now the completion time to set
+     * @param message the reason to set
+     * @return the number of updated operations
+     */
+    @Modifying
+    @Query("UPDATE ServerOperation o SET o.status = de.unibremen.swt.see.manager.model.ServerOperation.Status.FAILED, "
+            + "o.message = :message, o.finishTime = :now "
+            + "WHERE o.finishTime IS NULL AND o.creationTime < :time")
+    int failAbandoned(@Param("time") ZonedDateTime time, @Param("now") ZonedDateTime now,
+            @Param("message") String message);
+
+    /**
+     * Deletes all operations that have completed before the given time.
+     *
+     * @param time the point in time
+     * @return the number of deleted operations
+     */
+    @Modifying
+    @Query("DELETE FROM ServerOperation o WHERE o.finishTime < :time")
+    int deleteExpired(@Param("time") ZonedDateTime time);
+}
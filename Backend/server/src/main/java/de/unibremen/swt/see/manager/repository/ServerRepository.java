@@ -4,6 +4,9 @@ import de.unibremen.swt.see.manager.model.Server;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -26,4 +29,20 @@ public interface ServerRepository extends JpaRepository<Server, UUID> {
      */
     Optional<Server> findByContainerPort(int port);
 
+    /**
+     * Records the fencing token of a modification unless the server has
+     * already been modified with a higher token.
+     * <p>
+     * This is done in a single statement, so that a holder of an expired
+     * lease cannot overwrite modifications of the current holder.
+     *
+     * @param id the ID of the server
+     * @param token the fencing token of the held server lease
+     * @return {@code 1} if the token has been recorded, or {@code 0} if the
+     * token is outdated
+     */
+    @Modifying
+    @Query("UPDATE Server s SET s.fencingToken = :token "
+            + "WHERE s.id = :id AND (s.fencingToken IS NULL OR s.fencingToken <= :token)")
+    int fence(@Param("id") UUID id, @Param("token") long token);
 }
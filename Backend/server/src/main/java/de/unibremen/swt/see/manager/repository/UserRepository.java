@@ -4,7 +4,11 @@ import de.unibremen.swt.see.manager.model.User;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository interface for managing {@link User} entities.
@@ -40,4 +44,45 @@ public interface UserRepository extends JpaRepository<User, UUID> {
      */
     void deleteByUsername(String username);
 
+    /**
+     * Checks if a user has access to a server.
+     * <p>
+     * Access is granted if the user is an admin or has been assigned the
+     * server. The check is done in a single query using {@code EXISTS}
+     * subqueries on the primary keys of the {@code user_roles} and
+     * {@code user_servers} tables, so that its cost does not depend on the
+     * number of servers of the user.
+     *
+     * @param userId the ID of the user
+     * @param serverId the ID of the server
+     * @return {@code true} if the user exists and has access to the server
+     */
+    @Query("""
+           SELECT COUNT(u) > 0 FROM User u
+           WHERE u.id = :userId
+           AND (EXISTS (SELECT r FROM u.roles r
+                        WHERE r.name = de.unibremen.swt.see.manager.model.RoleType.ROLE_ADMIN)
+                OR EXISTS (SELECT s FROM u.servers s WHERE s.id = :serverId))
+           """)
+    boolean hasServerAccess(@Param("userId") UUID userId, @Param("serverId") UUID serverId);
+
+    /**
+     * Replaces the password hash of a user if it has not been changed in the
+     * meantime.
+     * <p>
+     * This is used to upgrade password hashes without overwriting a password
+     * that has been changed concurrently.
+     *
+     * @param userId the ID of the user
+     * @param expectedPassword the password hash that is expected to be stored
+     * @param newPassword the new password hash
+     * @return the number of updated users, i.e., {@code 0} if the password
+     * hash has been changed in the meantime
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :userId AND u.password = :expectedPassword")
+    int replacePassword(@Param("userId") UUID userId, @Param("expectedPassword") String expectedPassword,
+            @Param("newPassword") String newPassword);
+
 }
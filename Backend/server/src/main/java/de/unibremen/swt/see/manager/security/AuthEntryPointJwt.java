@@ -76,6 +76,8 @@ public class AuthEntryPointJwt implements AuthenticationEntryPoint {
             message = "Token signature is invalid!";
         } else if (request.getAttribute(ValidationError.TOKEN_EMPTY.toString()) != null) {
             message = "Token is empty!";
+        } else if (request.getAttribute(ValidationError.TOKEN_REVOKED.toString()) != null) {
+            message = "Token has been revoked!";
         }
 
         log.warn("Unauthorized error: {}", message);
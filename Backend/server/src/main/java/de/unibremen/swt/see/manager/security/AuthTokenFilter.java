@@ -1,5 +1,6 @@
 package de.unibremen.swt.see.manager.security;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
@@ -30,8 +31,11 @@ import org.springframework.web.filter.OncePerRequestFilter;
  *
  * <ul>
  * <li>Extracts the JWT token from the Authorization header</li>
- * <li>Validates the token using {@link JwtUtils}</li>
- * <li>Loads user details based on the username extracted from the token</li>
+ * <li>Validates the token using {@link JwtUtils} and rejects revoked tokens
+ * using the {@link TokenRevocationList}</li>
+ * <li>Takes the user details from the token in stateless mode, or loads them
+ * based on the username extracted from the token, using the
+ * {@link UserDetailsCache} to avoid a database query per request</li>
  * <li>Sets up the Spring Security context if authentication is successful</li>
  * </ul>
  * <p>
@@ -48,10 +52,16 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtils jwtUtils;
 
     /**
-     * Service for loading user-specific data during authentication.
+     * Cache for loading user-specific data during authentication.
      */
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private UserDetailsCache userDetailsCache;
+
+    /**
+     * List of revoked tokens.
+     */
+    @Autowired
+    private TokenRevocationList revocationList;
 
     /**
      * Performs the core filter processing for each request.
@@ -75,10 +85,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         final String jwt = jwtUtils.getJwtFromCookies(request);
-        boolean authorized = false;
+        Claims claims = null;
         try {
-            jwtUtils.validateJwtToken(jwt);
-            authorized = true;
+            claims = jwtUtils.parseJwtToken(jwt);
         } catch (ExpiredJwtException e) {
             log.debug("JWT token is expired: {}", e.getMessage());
             request.setAttribute(ValidationError.TOKEN_EXPIRED.toString(), e.getMessage());
@@ -96,11 +105,20 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             request.setAttribute(ValidationError.TOKEN_EMPTY.toString(), e.getMessage());
         }
 
-        if (authorized) {
-            final String username = jwtUtils.getUserNameFromJwtToken(jwt);
+        if (claims != null && revocationList.isRevoked(claims)) {
+            log.debug("JWT token is revoked: {}", claims.getId());
+            request.setAttribute(ValidationError.TOKEN_REVOKED.toString(), "JWT token is revoked");
+            claims = null;
+        }
+
+        if (claims != null) {
+            final String username = claims.getSubject();
 
             try {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+                if (userDetails == null) {
+                    userDetails = userDetailsCache.get(username);
+                }
 
                 UsernamePasswordAuthenticationToken authentication
                         = new UsernamePasswordAuthenticationToken(userDetails,
@@ -0,0 +1,81 @@
+package de.unibremen.swt.see.manager.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+/**
+ * Determines the BCrypt strength for the hardware the application runs on.
+ * <p>
+ * Each increment of the strength doubles the time needed to hash a password.
+ * The calibration measures the hash time for a low strength and picks the
+ * highest strength whose estimated hash time does not exceed the target. The
+ * strength never falls below {@link #MIN_STRENGTH}, which is the strength used
+ * before calibration was introduced, even on slow hardware.
+ */
+@Slf4j
+public final class BCryptStrengthCalibrator {
+
+    /**
+     * Lowest strength that is ever used.
+     */
+    public static final int MIN_STRENGTH = 12;
+
+    /**
+     * Highest strength that is ever used.
+     */
+    public static final int MAX_STRENGTH = 20;
+
+    /**
+     * Strength used to measure the hash time.
+     * <p>
+     * It is lower than {@link #MIN_STRENGTH} to keep the startup fast.
+     */
+    private static final int MEASURED_STRENGTH = 10;
+
+    /**
+     * Number of hashes used to warm up the JIT compiler.
+     */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /**
+     * Number of measured hashes; the fastest one is used.
+     */
+    private static final int MEASURED_ROUNDS = 3;
+
+    /**
+     * Utility class.
+     */
+    private BCryptStrengthCalibrator() {
+    }
+
+    /**
+     * Returns the highest strength whose hash time does not exceed the given
+     * target on this machine.
+     *
+     * @param targetMs the targeted time in milliseconds for a single hash
+     * @return the calibrated strength between {@link #MIN_STRENGTH} and
+     * {@link #MAX_STRENGTH}
+     */
+    public static int calibrate(long targetMs) {
+        final String salt = BCrypt.gensalt("$2b", MEASURED_STRENGTH);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            BCrypt.hashpw("calibration", salt);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            final long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        int strength = MIN_STRENGTH;
+        double estimatedMs = bestNanos / 1e6 * (1 << (MIN_STRENGTH - MEASURED_STRENGTH));
+        while (strength < MAX_STRENGTH && estimatedMs * 2 <= targetMs) {
+            strength++;
+            estimatedMs *= 2;
+        }
+        log.info("Calibrated BCrypt strength {} (~{} ms per hash, target {} ms)",
+                strength, Math.round(estimatedMs), targetMs);
+        return strength;
+    }
+}
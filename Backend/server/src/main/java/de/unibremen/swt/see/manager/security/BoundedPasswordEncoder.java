@@ -0,0 +1,190 @@
+package de.unibremen.swt.see.manager.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password encoder that runs a delegate on a bounded pool of worker threads.
+ * <p>
+ * Hashing and matching passwords with an adaptive function like BCrypt is
+ * deliberately expensive. If many users sign in at once, hashing on the request
+ * threads would occupy all CPU cores, stalling other requests like file
+ * downloads. This encoder limits the number of concurrent hash operations to
+ * the number of worker threads. Further operations wait in a bounded queue;
+ * if the queue is full, they are rejected immediately with a
+ * {@link PasswordHashingRejectedException}, which results in
+ * {@code 503 Service Unavailable}.
+ * <p>
+ * The following metrics are published, tagged with the {@code operation}
+ * ({@code encode} or {@code matches}):
+ * <ul>
+ * <li>{@code password.hashing.wait}: time spent in the queue</li>
+ * <li>{@code password.hashing.time}: time spent hashing</li>
+ * <li>{@code password.hashing.rejected}: number of rejected operations</li>
+ * </ul>
+ * Additionally, {@code password.hashing.queue} reports the current queue
+ * length.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    /**
+     * The encoder doing the actual work.
+     */
+    private final PasswordEncoder delegate;
+
+    /**
+     * Runs the hash operations.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Registry for the timers and counters.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param delegate the encoder doing the actual work
+     * @param threads the number of worker threads
+     * @param queueCapacity the maximum number of waiting operations
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    final Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Number of password hash operations waiting for a worker thread")
+                .register(meterRegistry);
+        log.info("Password hashing limited to {} threads with a queue of {}", threads, queueCapacity);
+    }
+
+    /**
+     * Encodes the raw password on a worker thread.
+     *
+     * @param rawPassword the password to encode
+     * @return the encoded password
+     * @throws PasswordHashingRejectedException if too many operations are
+     * waiting
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run("encode", () -> delegate.encode(rawPassword));
+    }
+
+    /**
+     * Verifies the raw password against the encoded password on a worker
+     * thread.
+     *
+     * @param rawPassword the raw password to verify
+     * @param encodedPassword the encoded password
+     * @return {@code true} if the passwords match, else {@code false}
+     * @throws PasswordHashingRejectedException if too many operations are
+     * waiting
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run("matches", () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Checks if the encoded password should be encoded again.
+     * <p>
+     * This does not hash anything and is directly passed to the delegate.
+     *
+     * @param encodedPassword the encoded password
+     * @return {@code true} if the password should be encoded again
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs the given operation on a worker thread and waits for its result.
+     *
+     * @param <T> the result type
+     * @param operation the name of the operation used for metrics
+     * @param task the operation
+     * @return the result of the operation
+     * @throws PasswordHashingRejectedException if the queue is full
+     */
+    private <T> T run(String operation, Callable<T> task) {
+        final long queuedAt = System.nanoTime();
+        final Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                final long startedAt = System.nanoTime();
+                timer("password.hashing.wait", operation).record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.call();
+                } finally {
+                    timer("password.hashing.time", operation)
+                            .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Counter.builder("password.hashing.rejected")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Password hashing rejected: too many pending operations");
+            throw new PasswordHashingRejectedException("Too many pending password hash operations.");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the timer with given name for given operation.
+     *
+     * @param name the name of the timer
+     * @param operation the operation
+     * @return the timer
+     */
+    private Timer timer(String name, String operation) {
+        return Timer.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -1,17 +1,31 @@
 package de.unibremen.swt.see.manager.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.WeakKeyException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.server.Cookie.SameSite;
 import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.WebUtils;
 
@@ -19,6 +33,17 @@ import javax.crypto.SecretKey;
 
 /**
  * Utility class for generating, parsing, and validating JSON Web Tokens (JWT).
+ * <p>
+ * In stateless mode, the ID, roles, and accessible servers of the user are
+ * included in the claims of generated tokens. Requests can then be
+ * authenticated from the token alone, without loading the user from the
+ * database. Tokens affected by changes of the user are rejected using the
+ * {@link TokenRevocationList}.
+ * <p>
+ * Clients send the same token with each request. To avoid parsing and
+ * verifying it again and again, the claims of verified tokens are cached until
+ * the token expires. The cache is keyed by the SHA-256 hash of the token, so
+ * that the tokens themselves are not kept in memory.
  */
 @Component
 @Slf4j
@@ -36,6 +61,18 @@ public class JwtUtils {
     @Value("${see.app.jwtCookieName}")
     private String jwtCookie;
 
+    /**
+     * Expiration time of refresh tokens in milliseconds.
+     */
+    @Value("${see.app.jwtRefreshExpirationMs}")
+    private long jwtRefreshExpirationMs;
+
+    /**
+     * Name of the cookie used for the refresh token.
+     */
+    @Value("${see.app.jwtRefreshCookieName}")
+    private String jwtRefreshCookie;
+
     /**
      * Contains the domain name, or IP address, and port of this back-end
      * application server.
@@ -49,6 +86,46 @@ public class JwtUtils {
     @Value("${server.servlet.context-path}")
     private String contextPath;
 
+    /**
+     * Whether user details are included in generated tokens, so that requests
+     * can be authenticated without database access.
+     */
+    @Value("${see.app.jwtStateless}")
+    private boolean stateless;
+
+    /**
+     * Name of the claim containing the user ID.
+     */
+    private static final String USER_ID_CLAIM = "uid";
+
+    /**
+     * Name of the claim containing the names of the user's authorities.
+     */
+    private static final String ROLES_CLAIM = "roles";
+
+    /**
+     * Name of the claim containing the IDs of the servers the user can access.
+     */
+    private static final String SERVERS_CLAIM = "servers";
+
+    /**
+     * Name of the claim containing the issue time in milliseconds since the
+     * epoch.
+     * <p>
+     * The standard {@code iat} claim only has a precision of seconds, which is
+     * not sufficient to tell if a token has been issued before or after a
+     * revocation.
+     */
+    static final String ISSUED_AT_MILLIS_CLAIM = "iatms";
+
+    /**
+     * Path of the user API relative to the context path.
+     * <p>
+     * The refresh token cookie is only sent to this path, as it is only needed
+     * to refresh tokens and to sign out.
+     */
+    private static final String REFRESH_COOKIE_PATH = "api/v1/user";
+
     /**
      * The secret key used for signing and verifying JWT.
      */
@@ -59,6 +136,13 @@ public class JwtUtils {
      */
     private final JwtParser jwtParser;
 
+    /**
+     * Claims of verified tokens by the hash of the token.
+     * <p>
+     * {@code null} if caching is disabled.
+     */
+    private final Cache<String, Claims> verifiedTokens;
+
     /**
      * Constructs a new {@code JwtUtils} instance and generates the secret key.
      * <p>
@@ -66,13 +150,26 @@ public class JwtUtils {
      * HMAC-SHA algorithms.
      *
      * @param jwtSecret secret used for constructing the key
+     * @param tokenCacheSize the maximum number of cached verified tokens;
+     * {@code 0} disables the cache
      * @throws WeakKeyException if the key is too short
      * @see io.jsonwebtoken.security.Keys#hmacShaKeyFor(byte[])
      */
-    public JwtUtils(@Value("${see.app.jwtSecret}") String jwtSecret) throws WeakKeyException {
+    public JwtUtils(@Value("${see.app.jwtSecret}") String jwtSecret,
+            @Value("${see.app.tokencache.max-size}") long tokenCacheSize) throws WeakKeyException {
         byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
         this.key = Keys. hmacShaKeyFor(keyBytes);
         this.jwtParser = Jwts.parser().verifyWith(key).build();
+        if (tokenCacheSize <= 0) {
+            log.info("Verified token cache is disabled");
+            this.verifiedTokens = null;
+            return;
+        }
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(tokenCacheSize)
+                .expireAfter(Expiry.<String, Claims>creating((hash, claims)
+                        -> Duration.ofMillis(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()))))
+                .build();
     }
 
     /**
@@ -102,12 +199,12 @@ public class JwtUtils {
      * @return the generated JWT cookie
      */
     public ResponseCookie generateJwtCookie(UserDetailsImpl userPrincipal) {
-        String jwt = generateToken(userPrincipal.getUsername());
+        String jwt = stateless ? generateToken(userPrincipal) : generateToken(userPrincipal.getUsername());
         ResponseCookie cookie = ResponseCookie
                 .from(jwtCookie, jwt)
                 .domain(backendDomain.split(":")[0])
                 .path(contextPath)
-                .maxAge(24 * 60 * 60)
+                .maxAge(Duration.ofMillis(jwtExpirationMs))
                 .httpOnly(true)
                 .sameSite(SameSite.STRICT.attributeValue())
                 .build();
@@ -131,6 +228,60 @@ public class JwtUtils {
         return cookie;
     }
 
+    /**
+     * Extracts the refresh token from the cookies of the given request.
+     *
+     * @param request the HTTP servlet request
+     * @return the refresh token, or {@code null} if there is none
+     */
+    public String getRefreshTokenFromCookies(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, jwtRefreshCookie);
+        return cookie != null ? cookie.getValue() : null;
+    }
+
+    /**
+     * Wraps the given refresh token in a cookie.
+     * <p>
+     * The cookie is only sent to the user API, expires along with the refresh
+     * token, and has the same flags as the JWT cookie.
+     *
+     * @param refreshToken the refresh token
+     * @return the refresh token cookie
+     * @see de.unibremen.swt.see.manager.service.RefreshTokenService
+     */
+    public ResponseCookie generateRefreshCookie(String refreshToken) {
+        return ResponseCookie
+                .from(jwtRefreshCookie, refreshToken)
+                .domain(backendDomain.split(":")[0])
+                .path(getRefreshCookiePath())
+                .maxAge(Duration.ofMillis(jwtRefreshExpirationMs))
+                .httpOnly(true)
+                .sameSite(SameSite.STRICT.attributeValue())
+                .build();
+    }
+
+    /**
+     * Generates a clean refresh token cookie for logout.
+     *
+     * @return the clean refresh token cookie
+     * @see #getCleanJwtCookie()
+     */
+    public ResponseCookie getCleanRefreshCookie() {
+        return ResponseCookie
+                .from(jwtRefreshCookie, null)
+                .path(getRefreshCookiePath())
+                .build();
+    }
+
+    /**
+     * Returns the path the refresh token cookie is restricted to.
+     *
+     * @return the path of the user API
+     */
+    private String getRefreshCookiePath() {
+        return (contextPath.endsWith("/") ? contextPath : contextPath + "/") + REFRESH_COOKIE_PATH;
+    }
+
     /**
      * Parses a JWT and extracts the username from it.
      * <p>
@@ -144,6 +295,85 @@ public class JwtUtils {
         return jwtParser.parseSignedClaims(token).getPayload().getSubject();
     }
 
+    /**
+     * Parses and validates a JWT and returns its claims.
+     * <p>
+     * Tokens that have been verified before are taken from the cache, until
+     * they expire. Only tokens with an expiration time are cached.
+     *
+     * @param token the JWT to parse
+     * @return the claims of the JWT
+     * @throws ExpiredJwtException if the token is expired
+     * @throws UnsupportedJwtException if given token is not a signed claims
+     * token
+     * @throws MalformedJwtException if the token is malformed
+     * @throws SecurityException if signature validation fails
+     * @throws IllegalArgumentException if the token is null or blank
+     */
+    public Claims parseJwtToken(String token)
+            throws ExpiredJwtException,
+            UnsupportedJwtException,
+            MalformedJwtException,
+            SecurityException,
+            IllegalArgumentException {
+        if (verifiedTokens == null || token == null || token.isBlank()) {
+            return jwtParser.parseSignedClaims(token).getPayload();
+        }
+        final String hash = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(hash);
+        if (claims == null) {
+            claims = jwtParser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(hash, claims);
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Computes the SHA-256 hash of a token.
+     *
+     * @param token the token
+     * @return the Base64-encoded hash
+     */
+    private static String hash(String token) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported!", e);
+        }
+    }
+
+    /**
+     * Builds the user details from the claims of a token.
+     * <p>
+     * This is only possible for tokens that have been generated in stateless
+     * mode. The password of the returned user details is {@code null}.
+     *
+     * @param claims the claims of the token
+     * @return the user details, or {@code null} if stateless mode is disabled
+     * or the token does not contain the user details
+     */
+    public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+        if (!stateless) {
+            return null;
+        }
+        final String userId = claims.get(USER_ID_CLAIM, String.class);
+        final List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        final List<?> servers = claims.get(SERVERS_CLAIM, List.class);
+        if (userId == null || roles == null || servers == null) {
+            return null;
+        }
+        final Collection<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.toString()))
+                .toList();
+        final Set<UUID> serverIds = servers.stream()
+                .map(server -> UUID.fromString(server.toString()))
+                .collect(Collectors.toUnmodifiableSet());
+        return new UserDetailsImpl(UUID.fromString(userId), claims.getSubject(), null, authorities, serverIds);
+    }
+
     /**
      * Validates a JWT.
      * <p>
@@ -165,7 +395,7 @@ public class JwtUtils {
             MalformedJwtException,
             SecurityException,
             IllegalArgumentException {
-        jwtParser.parseSignedClaims(authToken);
+        parseJwtToken(authToken);
     }
 
     /**
@@ -180,10 +410,40 @@ public class JwtUtils {
      */
     public String generateToken(String username) {
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(key, Jwts.SIG.HS256)
                 .compact();
     }
+
+    /**
+     * Generates a JWT containing the details of given user.
+     * <p>
+     * In addition to the claims set by {@link #generateToken(String)}, the
+     * token contains the ID, the authorities, and the IDs of the accessible
+     * servers of the user, as well as the precise issue time.
+     *
+     * @param userPrincipal the user details to include in the JWT
+     * @return The generated JWT as a string
+     */
+    public String generateToken(UserDetailsImpl userPrincipal) {
+        final Date now = new Date();
+        return Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .subject(userPrincipal.getUsername())
+                .claim(USER_ID_CLAIM, userPrincipal.getId().toString())
+                .claim(ROLES_CLAIM, userPrincipal.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .toList())
+                .claim(SERVERS_CLAIM, userPrincipal.getServerIds().stream()
+                        .map(UUID::toString)
+                        .toList())
+                .claim(ISSUED_AT_MILLIS_CLAIM, now.getTime())
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + jwtExpirationMs))
+                .signWith(key, Jwts.SIG.HS256)
+                .compact();
+    }
 }
@@ -0,0 +1,36 @@
+package de.unibremen.swt.see.manager.security;
+
+import lombok.Getter;
+
+/**
+ * Thrown if a sign-in attempt is rejected because too many attempts have
+ * been made from the same remote address or for the same username.
+ * <p>
+ * Clients should retry the request after {@link #getRetryAfterSeconds()}.
+ *
+ * @see LoginRateLimiter
+ */
+public class LoginRateLimitedException extends RuntimeException {
+
+    /**
+     * Unique identifier for serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of seconds after which the next attempt is allowed.
+     */
+    @Getter
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new exception.
+     *
+     * @param retryAfterSeconds the number of seconds after which the next
+     * attempt is allowed
+     */
+    public LoginRateLimitedException(long retryAfterSeconds) {
+        super("Too many sign-in attempts.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
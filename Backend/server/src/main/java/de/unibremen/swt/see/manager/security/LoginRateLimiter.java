@@ -0,0 +1,174 @@
+package de.unibremen.swt.see.manager.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the rate of sign-in attempts per remote address and per username.
+ * <p>
+ * Each sign-in attempt verifies a password using BCrypt, which is
+ * deliberately expensive. Without a limit, a credential-stuffing attack or a
+ * client retrying in a loop can occupy all CPU cores. Attempts are checked
+ * before the password is verified, so that rejected attempts are cheap.
+ * <p>
+ * Rates are configured with a burst capacity and a refill rate per minute; a
+ * capacity of {@code 0} disables the respective limit. The limit per remote
+ * address does not apply to configured addresses or ranges, e.g., the NAT
+ * gateway of a lab or the Docker host of the game servers, where many clients
+ * share an address. Rejected attempts are
+ * counted by the {@code login.rate.limited} metric, tagged with the
+ * {@code key} ({@code address} or {@code username}) that was exhausted.
+ *
+ * @see TokenBucketLimiter
+ */
+@Component
+@Slf4j
+public class LoginRateLimiter {
+
+    /**
+     * Maximum number of remote addresses and usernames each tracked in
+     * memory.
+     */
+    private static final long MAX_KEYS = 100_000;
+
+    /**
+     * Limits attempts per remote address; {@code null} if disabled.
+     */
+    private final TokenBucketLimiter addressLimiter;
+
+    /**
+     * Matches remote addresses that are exempt from the limit per remote
+     * address.
+     */
+    private final List<IpAddressMatcher> exemptAddresses;
+
+    /**
+     * Limits attempts per username; {@code null} if disabled.
+     */
+    private final TokenBucketLimiter usernameLimiter;
+
+    /**
+     * Counts attempts rejected because of the remote address.
+     */
+    private final Counter addressRejected;
+
+    /**
+     * Counts attempts rejected because of the username.
+     */
+    private final Counter usernameRejected;
+
+    /**
+     * Creates the limiter.
+     *
+     * @param addressCapacity the number of attempts per remote address
+     * allowed in a burst; {@code 0} disables the limit
+     * @param addressPerMinute the number of attempts per remote address
+     * regained per minute
+     * @param exemptAddresses IP addresses or CIDR ranges, e.g.,
+     * {@code 172.17.0.0/16}, that are exempt from the limit per remote address
+     * @param usernameCapacity the number of attempts per username allowed in
+     * a burst; {@code 0} disables the limit
+     * @param usernamePerMinute the number of attempts per username regained
+     * per minute
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    public LoginRateLimiter(
+            @Value("${see.app.loginlimit.address.capacity}") int addressCapacity,
+            @Value("${see.app.loginlimit.address.per-minute}") double addressPerMinute,
+            @Value("${see.app.loginlimit.address.exempt}") List<String> exemptAddresses,
+            @Value("${see.app.loginlimit.username.capacity}") int usernameCapacity,
+            @Value("${see.app.loginlimit.username.per-minute}") double usernamePerMinute,
+            MeterRegistry meterRegistry) {
+        this.addressLimiter = create("remote address", addressCapacity, addressPerMinute);
+        this.exemptAddresses = exemptAddresses.stream()
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+        this.usernameLimiter = create("username", usernameCapacity, usernamePerMinute);
+        this.addressRejected = rejectedCounter(meterRegistry, "address");
+        this.usernameRejected = rejectedCounter(meterRegistry, "username");
+    }
+
+    /**
+     * Records a sign-in attempt.
+     *
+     * @param remoteAddress the remote address of the client
+     * @param username the username used to sign in
+     * @throws LoginRateLimitedException if too many attempts have been made
+     * from the remote address or for the username
+     */
+    public void acquire(String remoteAddress, String username) throws LoginRateLimitedException {
+        if (addressLimiter != null && remoteAddress != null && !isExempt(remoteAddress)) {
+            final long retryAfter = addressLimiter.tryAcquire(remoteAddress);
+            if (retryAfter > 0) {
+                addressRejected.increment();
+                log.warn("Too many sign-in attempts from {}", remoteAddress);
+                throw new LoginRateLimitedException(retryAfter);
+            }
+        }
+        if (usernameLimiter != null && username != null) {
+            final long retryAfter = usernameLimiter.tryAcquire(username);
+            if (retryAfter > 0) {
+                usernameRejected.increment();
+                log.warn("Too many sign-in attempts for user {}", username);
+                throw new LoginRateLimitedException(retryAfter);
+            }
+        }
+    }
+
+    /**
+     * Checks if given remote address is exempt from the limit per remote
+     * address.
+     *
+     * @param remoteAddress the remote address of the client
+     * @return {@code true} if the address is exempt, else {@code false}
+     */
+    private boolean isExempt(String remoteAddress) {
+        for (IpAddressMatcher matcher : exemptAddresses) {
+            try {
+                if (matcher.matches(remoteAddress)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a limiter unless it is disabled.
+     *
+     * @param name the name of the key used for logging
+     * @param capacity the burst capacity; {@code 0} disables the limiter
+     * @param perMinute the refill rate per minute
+     * @return the limiter, or {@code null} if disabled
+     */
+    private static TokenBucketLimiter create(String name, int capacity, double perMinute) {
+        if (capacity <= 0 || perMinute <= 0) {
+            log.info("Sign-in rate limit per {} is disabled", name);
+            return null;
+        }
+        return new TokenBucketLimiter(capacity, perMinute, MAX_KEYS);
+    }
+
+    /**
+     * Registers the counter for attempts rejected because of given key.
+     *
+     * @param meterRegistry the registry
+     * @param key the exhausted key
+     * @return the counter
+     */
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("login.rate.limited")
+                .description("Number of sign-in attempts rejected by the rate limit")
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,26 @@
+package de.unibremen.swt.see.manager.security;
+
+/**
+ * Thrown if a password cannot be hashed because too many hash operations are
+ * already pending.
+ * <p>
+ * Clients should retry the request later.
+ *
+ * @see BoundedPasswordEncoder
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    /**
+     * Unique identifier for serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception with the given message.
+     *
+     * @param message the detail message
+     */
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,78 @@
+package de.unibremen.swt.see.manager.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password encoder for machine credentials using a single SHA-256 hash.
+ * <p>
+ * Adaptive functions like BCrypt are deliberately slow to protect passwords
+ * chosen by humans against brute-force attacks. Machine credentials, like the
+ * randomly generated passwords of server accounts, have enough entropy to
+ * make such attacks infeasible anyway. Hashing them with SHA-256 takes
+ * microseconds instead of hundreds of milliseconds.
+ * <p>
+ * <b>This encoder must not be used for passwords chosen by users.</b>
+ * <p>
+ * Hashes are compared in constant time.
+ */
+public class Sha256PasswordEncoder implements PasswordEncoder {
+
+    /**
+     * ID of this encoder used as prefix of encoded passwords, e.g.,
+     * {@code {sha256}...}.
+     *
+     * @see org.springframework.security.crypto.password.DelegatingPasswordEncoder
+     */
+    public static final String ID = "sha256";
+
+    /**
+     * Hashes the raw password.
+     *
+     * @param rawPassword the password to hash
+     * @return the hex-encoded hash
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return HexFormat.of().formatHex(hash(rawPassword));
+    }
+
+    /**
+     * Verifies the raw password against the hash in constant time.
+     *
+     * @param rawPassword the raw password to verify
+     * @param encodedPassword the hex-encoded hash
+     * @return {@code true} if the passwords match, else {@code false}
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        final byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(encodedPassword);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, hash(rawPassword));
+    }
+
+    /**
+     * Computes the SHA-256 hash of the password.
+     *
+     * @param rawPassword the password
+     * @return the hash
+     */
+    private static byte[] hash(CharSequence rawPassword) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported!", e);
+        }
+    }
+}
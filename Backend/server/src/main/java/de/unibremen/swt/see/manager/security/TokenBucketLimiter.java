@@ -0,0 +1,145 @@
+package de.unibremen.swt.see.manager.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory token-bucket rate limiter with one bucket per key.
+ * <p>
+ * Each bucket holds up to {@code capacity} tokens and is refilled with
+ * {@code refillPerMinute} tokens per minute. Each attempt takes one token;
+ * attempts are rejected while the bucket is empty.
+ * <p>
+ * Buckets are guarded by a fixed number of striped locks instead of a single
+ * lock, so that attempts with different keys rarely contend. Buckets that
+ * have not been used until they would be full again are dropped, and the
+ * number of buckets is bounded, so that random keys cannot exhaust the
+ * memory.
+ */
+public class TokenBucketLimiter {
+
+    /**
+     * Number of lock stripes; must be a power of two.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * Maximum number of tokens in a bucket.
+     */
+    private final double capacity;
+
+    /**
+     * Tokens added per nanosecond.
+     */
+    private final double refillPerNano;
+
+    /**
+     * Supplies the current time in nanoseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Buckets by key.
+     */
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * Locks guarding the buckets, selected by the hash of the key.
+     */
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    /**
+     * State of a single bucket; guarded by the stripe lock of its key.
+     */
+    private static final class Bucket {
+
+        /**
+         * Number of available tokens.
+         */
+        private double tokens;
+
+        /**
+         * Time of the last refill in nanoseconds.
+         */
+        private long refilledAt;
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param capacity the maximum number of tokens in a bucket, i.e., the
+     * number of attempts allowed in a burst
+     * @param refillPerMinute the number of tokens added per minute
+     * @param maxKeys the maximum number of buckets kept in memory
+     */
+    public TokenBucketLimiter(int capacity, double refillPerMinute, long maxKeys) {
+        this(capacity, refillPerMinute, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * Creates a limiter using the given clock.
+     *
+     * @param capacity the maximum number of tokens in a bucket
+     * @param refillPerMinute the number of tokens added per minute
+     * @param maxKeys the maximum number of buckets kept in memory
+     * @param clock supplies the current time in nanoseconds
+     */
+    TokenBucketLimiter(int capacity, double refillPerMinute, long maxKeys, LongSupplier clock) {
+        this.clock = clock;
+        this.capacity = capacity;
+        this.refillPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos((long) Math.ceil(capacity / refillPerNano)))
+                .build();
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the given key.
+     *
+     * @param key the key, e.g., a remote address
+     * @return {@code 0} if a token has been taken, otherwise the number of
+     * seconds until the next token is available
+     */
+    public long tryAcquire(String key) {
+        final ReentrantLock lock = locks[spread(key.hashCode()) & (STRIPES - 1)];
+        lock.lock();
+        try {
+            final long now = clock.getAsLong();
+            final Bucket bucket = buckets.get(key, k -> {
+                final Bucket newBucket = new Bucket();
+                newBucket.tokens = capacity;
+                newBucket.refilledAt = now;
+                return newBucket;
+            });
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * refillPerNano);
+            bucket.refilledAt = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            final double nanosUntilToken = (1 - bucket.tokens) / refillPerNano;
+            return Math.max(1, (long) Math.ceil(nanosUntilToken / TimeUnit.SECONDS.toNanos(1)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code, so that keys with similar hash codes
+     * are distributed over all stripes.
+     *
+     * @param hash the hash code
+     * @return the spread hash code
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
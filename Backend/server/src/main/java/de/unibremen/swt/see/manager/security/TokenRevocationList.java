@@ -0,0 +1,220 @@
+package de.unibremen.swt.see.manager.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import de.unibremen.swt.see.manager.model.Revocation;
+import de.unibremen.swt.see.manager.repository.RevocationRepository;
+import io.jsonwebtoken.Claims;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * In-memory list of revoked JSON Web Tokens.
+ * <p>
+ * Tokens can be revoked individually by their ID, e.g., when a user signs out,
+ * or collectively for a user, e.g., when the roles of the user change. In the
+ * latter case, all tokens of the user that were issued up to the revocation
+ * are rejected. Revoking the tokens of a user is only necessary in stateless mode, as the
+ * user details are loaded from the database otherwise, and has no effect if
+ * stateless mode is disabled.
+ * <p>
+ * Entries are only kept as long as the affected tokens might still be valid,
+ * so that the list stays small. The list is not persisted; revocations are lost
+ * on restart.
+ * <p>
+ * If cluster coordination is enabled, revocations are additionally stored in
+ * the database and looked up for each token, so that a token revoked by one
+ * instance is rejected by all instances.
+ *
+ * @see JwtUtils
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+    /**
+     * Prefix of the subject of persisted revocations of single tokens.
+     */
+    private static final String TOKEN_PREFIX = "token:";
+
+    /**
+     * Prefix of the subject of persisted revocations of all tokens of a user.
+     */
+    private static final String USER_PREFIX = "user:";
+
+    /**
+     * Revoked token IDs mapped to the expiration time of the token in
+     * milliseconds since the epoch.
+     */
+    private final Cache<String, Long> revokedTokens;
+
+    /**
+     * Usernames mapped to the time of their last revocation in milliseconds
+     * since the epoch.
+     */
+    private final Cache<String, Long> revokedUsers;
+
+    /**
+     * Whether tokens contain the user details.
+     */
+    private final boolean stateless;
+
+    /**
+     * The lifetime of issued tokens in milliseconds.
+     */
+    private final long jwtExpirationMs;
+
+    /**
+     * Used to share revocations with other instances.
+     * <p>
+     * {@code null} if cluster coordination is disabled.
+     */
+    private final RevocationRepository revocationRepo;
+
+    /**
+     * Creates the revocation list.
+     *
+     * @param jwtExpirationMs the lifetime of issued tokens in milliseconds
+     * @param stateless whether tokens contain the user details
+     * @param clusterEnabled whether revocations are shared with other
+     * instances
+     * @param revocationRepo the repository to store shared revocations in
+     */
+    public TokenRevocationList(@Value("${see.app.jwtExpirationMs}") long jwtExpirationMs,
+            @Value("${see.app.jwtStateless}") boolean stateless,
+            @Value("${see.app.cluster.enabled}") boolean clusterEnabled,
+            RevocationRepository revocationRepo) {
+        this.stateless = stateless;
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.revocationRepo = clusterEnabled ? revocationRepo : null;
+        this.revokedTokens = Caffeine.newBuilder()
+                .expireAfter(Expiry.<String, Long>creating((id, expiration)
+                        -> Duration.ofMillis(Math.max(0, expiration - System.currentTimeMillis()))))
+                .build();
+        this.revokedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(jwtExpirationMs))
+                .build();
+    }
+
+    /**
+     * Revokes the token with given claims.
+     *
+     * @param claims the claims of the token
+     */
+    public void revokeToken(Claims claims) {
+        if (claims.getId() == null || claims.getExpiration() == null) {
+            return;
+        }
+        log.debug("Revoking token {}", claims.getId());
+        revokedTokens.put(claims.getId(), claims.getExpiration().getTime());
+        share(TOKEN_PREFIX + claims.getId(), claims.getExpiration().getTime());
+    }
+
+    /**
+     * Revokes all tokens of the user with given username that have been issued
+     * until now.
+     * <p>
+     * This has no effect if stateless mode is disabled.
+     *
+     * @param username the username of the user
+     */
+    public void revokeUser(String username) {
+        if (!stateless || username == null) {
+            return;
+        }
+        log.debug("Revoking tokens of user {}", username);
+        final long now = System.currentTimeMillis();
+        revokedUsers.put(username, now);
+        share(USER_PREFIX + username, now + jwtExpirationMs);
+    }
+
+    /**
+     * Checks if the token with given claims has been revoked.
+     *
+     * @param claims the claims of the token
+     * @return {@code true} if the token has been revoked, else {@code false}
+     */
+    public boolean isRevoked(Claims claims) {
+        if (claims.getId() != null && revokedTokens.getIfPresent(claims.getId()) != null) {
+            return true;
+        }
+        Long revocationTime = revokedUsers.getIfPresent(claims.getSubject());
+        for (Revocation revocation : findShared(claims)) {
+            if (revocation.getSubject().startsWith(TOKEN_PREFIX)) {
+                return true;
+            }
+            if (revocationTime == null || revocation.getRevokedAt() > revocationTime) {
+                revocationTime = revocation.getRevokedAt();
+            }
+        }
+        if (revocationTime == null) {
+            return false;
+        }
+        final Number issuedAt = claims.get(JwtUtils.ISSUED_AT_MILLIS_CLAIM, Number.class);
+        return issuedAt == null || issuedAt.longValue() <= revocationTime;
+    }
+
+    /**
+     * Deletes shared revocations of expired tokens on a fixed interval.
+     */
+    @Scheduled(initialDelay = 3600000, fixedRate = 3600000)
+    @Transactional
+    public void deleteExpired() {
+        if (revocationRepo == null) {
+            return;
+        }
+        final int deleted = revocationRepo.deleteExpired(System.currentTimeMillis());
+        if (deleted > 0) {
+            log.info("Deleted {} expired token revocations", deleted);
+        }
+    }
+
+    /**
+     * Stores a revocation in the database to share it with other instances.
+     * <p>
+     * Nothing is stored if cluster coordination is disabled.
+     *
+     * @param subject the revoked subject
+     * @param expiresAt the time in milliseconds since the epoch after which
+     * all affected tokens have expired
+     */
+    private void share(String subject, long expiresAt) {
+        if (revocationRepo == null) {
+            return;
+        }
+        final Revocation revocation = new Revocation();
+        revocation.setSubject(subject);
+        revocation.setRevokedAt(System.currentTimeMillis());
+        revocation.setExpiresAt(expiresAt);
+        revocationRepo.save(revocation);
+    }
+
+    /**
+     * Looks up the shared revocations that might affect the token with given
+     * claims with a single query.
+     *
+     * @param claims the claims of the token
+     * @return the shared revocations, or an empty list if cluster coordination
+     * is disabled
+     */
+    private List<Revocation> findShared(Claims claims) {
+        if (revocationRepo == null) {
+            return List.of();
+        }
+        final List<String> subjects = new ArrayList<>(2);
+        if (claims.getId() != null) {
+            subjects.add(TOKEN_PREFIX + claims.getId());
+        }
+        if (stateless && claims.getSubject() != null) {
+            subjects.add(USER_PREFIX + claims.getSubject());
+        }
+        return subjects.isEmpty() ? List.of() : revocationRepo.findAllById(subjects);
+    }
+}
@@ -0,0 +1,125 @@
+package de.unibremen.swt.see.manager.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Size-bounded in-memory cache for user details of authenticated users.
+ * <p>
+ * The {@link AuthTokenFilter} needs the details of the user for each
+ * authenticated request. This cache keeps them in memory for a configurable
+ * time, so that the hot path does not require a database query.
+ * <p>
+ * Entries need to be invalidated whenever the username, password, or roles of
+ * a user change, or the user is deleted. Invalidations during a transaction are
+ * repeated after the commit, so that concurrent requests cannot put stale
+ * details back into the cache in the meantime. Unknown usernames are not
+ * cached.
+ * <p>
+ * The cache is disabled if cluster coordination is enabled, since
+ * invalidations are not shared with other instances.
+ * <p>
+ * Hit, miss, and eviction counters are published as {@code cache.*} metrics
+ * with tag {@code cache=users}.
+ *
+ * @see de.unibremen.swt.see.manager.service.UserService
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+    /**
+     * Name of the cache used for metrics.
+     */
+    private static final String CACHE_NAME = "users";
+
+    /**
+     * Used to load user details that are not yet cached.
+     */
+    private final UserDetailsServiceImpl userDetailsService;
+
+    /**
+     * Cached user details by username.
+     * <p>
+     * {@code null} if caching is disabled.
+     */
+    private final Cache<String, UserDetailsImpl> cache;
+
+    /**
+     * Creates the cache with given bounds.
+     *
+     * @param userDetailsService the service to load user details from
+     * @param maxSize the maximum number of cached users; {@code 0} disables
+     * the cache
+     * @param ttlMs the time in milliseconds after which cached details expire
+     * @param clusterEnabled whether other instances share the database, which
+     * disables the cache
+     * @param meterRegistry the registry to publish the cache metrics to
+     */
+    public UserDetailsCache(UserDetailsServiceImpl userDetailsService,
+            @Value("${see.app.usercache.max-size}") long maxSize,
+            @Value("${see.app.usercache.ttl-ms}") long ttlMs,
+            @Value("${see.app.cluster.enabled}") boolean clusterEnabled,
+            MeterRegistry meterRegistry) {
+        this.userDetailsService = userDetailsService;
+        if (maxSize <= 0 || ttlMs <= 0 || clusterEnabled) {
+            log.info("User details cache is disabled");
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the details of the user with given username.
+     * <p>
+     * The details are loaded into the cache if they are not yet present.
+     *
+     * @param username the username of the user
+     * @return the user details
+     * @throws UsernameNotFoundException if the user does not exist
+     */
+    public UserDetailsImpl get(String username) throws UsernameNotFoundException {
+        if (cache == null) {
+            return (UserDetailsImpl) userDetailsService.loadUserByUsername(username);
+        }
+        return cache.get(username, name -> (UserDetailsImpl) userDetailsService.loadUserByUsername(name));
+    }
+
+    /**
+     * Removes the details of the user with given username from the cache.
+     * <p>
+     * If a transaction is active, the details are removed again after it has
+     * been committed.
+     *
+     * @param username the username of the user
+     */
+    public void invalidate(String username) {
+        if (cache == null || username == null) {
+            return;
+        }
+        cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+}
@@ -5,6 +5,7 @@ import de.unibremen.swt.see.manager.model.User;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.Getter;
@@ -49,6 +50,16 @@ public class UserDetailsImpl implements UserDetails {
      */
     private final Collection<? extends GrantedAuthority> authorities;
 
+    /**
+     * IDs of the servers the user has been granted access to.
+     * <p>
+     * The IDs are only collected if they are embedded in tokens, i.e., in
+     * stateless mode. Otherwise, the set is empty and access is checked
+     * against the database.
+     */
+    @Getter
+    private final Set<UUID> serverIds;
+
     /**
      * Constructs a new UserDetailsImpl instance.
      *
@@ -56,31 +67,42 @@ public class UserDetailsImpl implements UserDetails {
      * @param username the user's username
      * @param password the user's password
      * @param authorities the user's granted authorities
+     * @param serverIds the IDs of the servers the user can access
      */
     public UserDetailsImpl(UUID id, String username, String password,
-                           Collection<? extends GrantedAuthority> authorities) {
+                           Collection<? extends GrantedAuthority> authorities, Set<UUID> serverIds) {
         this.id = id;
         this.username = username;
         this.password = password;
         this.authorities = authorities;
+        this.serverIds = serverIds;
     }
 
     /**
      * Builds a {@code UserDetailsImpl} instance from a {@link User} entity.
+     * <p>
+     * The servers of the user are only loaded if requested, as the user might
+     * have been granted access to many servers.
      *
      * @param user the {@link User} entity to build from
+     * @param withServerIds whether the IDs of the servers the user can access
+     * should be included
      * @return the built {@code UserDetailsImpl} instance
      */
-    public static UserDetailsImpl build(User user) {
+    public static UserDetailsImpl build(User user, boolean withServerIds) {
         List<GrantedAuthority> authorities = user.getRoles().stream()
                 .map(role -> new SimpleGrantedAuthority(role.getName().name()))
                 .collect(Collectors.toList());
+        Set<UUID> serverIds = !withServerIds ? Set.of() : user.getServers().stream()
+                .map(server -> server.getId())
+                .collect(Collectors.toUnmodifiableSet());
 
         return new UserDetailsImpl(
                 user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                authorities);
+                authorities,
+                serverIds);
     }
 
     /**
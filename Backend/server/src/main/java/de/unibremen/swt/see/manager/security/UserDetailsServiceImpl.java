@@ -3,6 +3,7 @@ package de.unibremen.swt.see.manager.security;
 import de.unibremen.swt.see.manager.model.User;
 import de.unibremen.swt.see.manager.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -24,12 +25,21 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     UserRepository userRepository;
 
+    /**
+     * Whether tokens contain the user details, including the IDs of the
+     * servers the user can access.
+     */
+    @Value("${see.app.jwtStateless}")
+    private boolean stateless;
+
     /**
      * Loads a user by their username.
      * <p>
      * This method retrieves the user details from the database based on the
      * provided username. It maps the user data to {@link UserDetailsImpl},
-     * which is then returned to Spring Security for authentication.
+     * which is then returned to Spring Security for authentication. The
+     * servers of the user are only loaded in stateless mode, where they are
+     * embedded in tokens.
      *
      * @param username the username of the user to load
      * @return the loaded {@link UserDetails} instance
@@ -41,7 +51,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
 
-        return UserDetailsImpl.build(user);
+        return UserDetailsImpl.build(user, stateless);
     }
 
 }
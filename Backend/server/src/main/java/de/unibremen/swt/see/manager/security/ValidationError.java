@@ -28,4 +28,9 @@ public enum ValidationError {
      * Token is null or blank.
      */
     TOKEN_EMPTY,
+    
+    /**
+     * Token has been revoked.
+     */
+    TOKEN_REVOKED,
 }
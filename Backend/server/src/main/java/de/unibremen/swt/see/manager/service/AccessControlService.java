@@ -4,14 +4,23 @@ import de.unibremen.swt.see.manager.model.File;
 import de.unibremen.swt.see.manager.model.RoleType;
 import de.unibremen.swt.see.manager.model.Server;
 import de.unibremen.swt.see.manager.model.User;
+import de.unibremen.swt.see.manager.security.UserDetailsImpl;
 import java.nio.file.AccessDeniedException;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * Service class for managing operations related to access control.
+ * <p>
+ * Access decisions for authenticated principals are based on the roles
+ * contained in the {@link UserDetailsImpl}. In stateless mode, the IDs of the
+ * accessible servers are contained as well, so that these decisions do not
+ * require the database. Other decisions are made by single {@code EXISTS}
+ * queries that do not load any entities. The servers of files are cached in
+ * the {@link AccessDecisionCache}.
  */
 @Service
 @Slf4j
@@ -24,14 +33,24 @@ public class AccessControlService {
     private final FileService fileService;
 
     /**
-     * Used to access servers.
+     * Used to access users.
      */
-    private final ServerService serverService;
+    private final UserService userService;
 
     /**
-     * Used to access users.
+     * Caches the servers of files.
      */
-    private final UserService userService;
+    private final AccessDecisionCache accessDecisions;
+
+    /**
+     * Whether the details of authenticated users contain the IDs of the
+     * servers they can access.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.jwtStateless}")
+    private boolean stateless;
 
     /**
      * Evaluates if given user has access to given server.
@@ -42,10 +61,10 @@ public class AccessControlService {
      * @throws AccessDeniedException if the access cannot be granted
      */
     public boolean canAccessServer(User user, Server server) throws AccessDeniedException {
-        if (userService.hasRole(user, RoleType.ROLE_ADMIN) || userService.hasServer(user, server)) {
-            return true;
+        if (user == null) {
+            throw new AccessDeniedException("User is not allowed to access the server!");
         }
-        throw new AccessDeniedException("User is not allowed to access the server!");
+        return canAccessServer(user.getId(), server != null ? server.getId() : null);
     }
 
     /**
@@ -57,9 +76,31 @@ public class AccessControlService {
      * @throws AccessDeniedException if the access cannot be granted
      */
     public boolean canAccessServer(UUID userId, UUID serverId) throws AccessDeniedException {
-        final User user = userService.get(userId);
-        final Server server = serverService.get(serverId);
-        return canAccessServer(user, server);
+        if (userService.hasServerAccess(userId, serverId)) {
+            return true;
+        }
+        throw new AccessDeniedException("User is not allowed to access the server!");
+    }
+
+    /**
+     * Evaluates if given authenticated user has access to given server.
+     * <p>
+     * Admins are granted access without querying the database. Otherwise, the
+     * server IDs of the user details are checked in stateless mode, or a single
+     * {@code EXISTS} query is made.
+     *
+     * @param principal the details of the authenticated user
+     * @param serverId the server ID
+     * @return {@code true} if the user is granted access to the server
+     * @throws AccessDeniedException if the access cannot be granted
+     */
+    public boolean canAccessServer(UserDetailsImpl principal, UUID serverId) throws AccessDeniedException {
+        if (principal != null && serverId != null && (isAdmin(principal)
+                || (stateless ? principal.getServerIds().contains(serverId)
+                        : userService.hasServerAccess(principal.getId(), serverId)))) {
+            return true;
+        }
+        throw new AccessDeniedException("User is not allowed to access the server!");
     }
 
     /**
@@ -91,9 +132,58 @@ public class AccessControlService {
      * @throws AccessDeniedException if the access cannot be granted
      */
     public boolean canAccessFile(UUID userId, UUID fileId) throws AccessDeniedException {
-        final User user = userService.get(userId);
-        final File file = fileService.get(fileId);
-        return canAccessFile(user, file);
+        final UUID serverId = getServerId(fileId);
+        if (userId != null && serverId != null) {
+            try {
+                return canAccessServer(userId, serverId);
+            } catch (AccessDeniedException e) {
+                // Do nothing
+            }
+        }
+        throw new AccessDeniedException("User is not allowed to access the file!");
+    }
+
+    /**
+     * Evaluates if given authenticated user has access to given file.
+     *
+     * @param principal the details of the authenticated user
+     * @param fileId the file ID
+     * @return {@code true} if the user is granted access to the file
+     * @throws AccessDeniedException if the access cannot be granted
+     */
+    public boolean canAccessFile(UserDetailsImpl principal, UUID fileId) throws AccessDeniedException {
+        final UUID serverId = getServerId(fileId);
+        if (principal != null && serverId != null) {
+            try {
+                return canAccessServer(principal, serverId);
+            } catch (AccessDeniedException e) {
+                // Do nothing
+            }
+        }
+        throw new AccessDeniedException("User is not allowed to access the file!");
     }
 
+    /**
+     * Retrieves the ID of the server given file belongs to.
+     * <p>
+     * The ID is cached. On a cache miss, only the foreign key is selected
+     * instead of loading the file.
+     *
+     * @param fileId the file ID
+     * @return the server ID, or {@code null} if the file does not exist
+     */
+    private UUID getServerId(UUID fileId) {
+        return accessDecisions.getServerId(fileId, fileService::getServerId);
+    }
+
+    /**
+     * Checks if given authenticated user has the admin role.
+     *
+     * @param principal the details of the authenticated user
+     * @return {@code true} if the user is an admin
+     */
+    private static boolean isAdmin(UserDetailsImpl principal) {
+        return principal.getAuthorities().stream()
+                .anyMatch(authority -> RoleType.ROLE_ADMIN.name().equals(authority.getAuthority()));
+    }
 }
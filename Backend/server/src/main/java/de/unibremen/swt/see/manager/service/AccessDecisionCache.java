@@ -0,0 +1,120 @@
+package de.unibremen.swt.see.manager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Size-bounded in-memory cache for the servers of files, as used for access
+ * control decisions.
+ * <p>
+ * Deciding if a user can access a file requires looking up the server of the
+ * file. Since files are requested frequently, but never move between servers,
+ * the server of each file is cached. The decisions themselves are based on the
+ * server IDs contained in the authenticated principal and are not cached.
+ * <p>
+ * Entries need to be invalidated whenever files are deleted. Invalidations
+ * during a transaction are repeated after its completion, so that concurrent
+ * requests cannot put stale entries back into the cache in the meantime.
+ * The cache is disabled if cluster coordination is enabled, since
+ * invalidations are not shared with other instances.
+ * <p>
+ * Hit, miss, and eviction counters are published as {@code cache.*} metrics
+ * with tag {@code cache=fileServers}.
+ *
+ * @see AccessControlService
+ */
+@Component
+@Slf4j
+public class AccessDecisionCache {
+
+    /**
+     * Cached server IDs by file ID.
+     * <p>
+     * {@code null} if caching is disabled.
+     */
+    private final Cache<UUID, UUID> fileServers;
+
+    /**
+     * Creates the cache with given bounds.
+     *
+     * @param maxSize the maximum number of cached file associations;
+     * {@code 0} disables the cache
+     * @param ttlMs the time in milliseconds after which cached entries expire
+     * @param clusterEnabled whether other instances share the database, which
+     * disables the cache
+     * @param meterRegistry the registry to publish the cache metrics to
+     */
+    public AccessDecisionCache(@Value("${see.app.accesscache.max-size}") long maxSize,
+            @Value("${see.app.accesscache.ttl-ms}") long ttlMs,
+            @Value("${see.app.cluster.enabled}") boolean clusterEnabled,
+            MeterRegistry meterRegistry) {
+        if (maxSize <= 0 || ttlMs <= 0 || clusterEnabled) {
+            log.info("Access decision cache is disabled");
+            this.fileServers = null;
+            return;
+        }
+        this.fileServers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, fileServers, "fileServers");
+    }
+
+    /**
+     * Returns the ID of the server given file belongs to.
+     * <p>
+     * The ID is looked up and cached if it is not yet present.
+     *
+     * @param fileId the ID of the file
+     * @param lookup looks up the server ID of a file ID, returning {@code null}
+     * if the file does not exist
+     * @return the server ID, or {@code null} if the file does not exist
+     */
+    public UUID getServerId(UUID fileId, Function<UUID, UUID> lookup) {
+        if (fileServers == null || fileId == null) {
+            return lookup.apply(fileId);
+        }
+        return fileServers.get(fileId, lookup);
+    }
+
+    /**
+     * Removes given file from the cache.
+     *
+     * @param fileId the ID of the file
+     */
+    public void invalidateFile(UUID fileId) {
+        if (fileServers == null || fileId == null) {
+            return;
+        }
+        runNowAndAfterTransaction(() -> fileServers.invalidate(fileId));
+    }
+
+    /**
+     * Runs the given invalidation immediately and, if a transaction is active,
+     * again after its completion.
+     *
+     * @param invalidation the invalidation to run
+     */
+    private static void runNowAndAfterTransaction(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
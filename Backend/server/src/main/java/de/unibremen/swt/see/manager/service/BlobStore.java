@@ -0,0 +1,553 @@
+package de.unibremen.swt.see.manager.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Content-addressed storage for file contents.
+ * <p>
+ * Each distinct content is stored exactly once on the local file system,
+ * identified by its digest. The digest may be followed by an extension that
+ * denotes the encoding of the stored content. File metadata objects referencing
+ * the same content share the stored blob. A blob is removed as soon as the last file referencing
+ * it has been deleted.
+ * <p>
+ * The references are counted by the caller, usually based on the file metadata
+ * stored in the database. As these references only become visible when the
+ * surrounding transaction is committed, this store keeps track of pending
+ * references of transactions in progress. Both, storing and releasing a blob,
+ * are synchronized per digest.
+ * <p>
+ * If cluster coordination is enabled, instances sharing the file storage
+ * cannot see the pending references of each other. Therefore, an instance
+ * holds the lease {@code blob:<digest>} while it stores a blob and as long as
+ * it has pending references to it. Other instances wait for the lease before
+ * storing the same blob, and do not delete a blob whose lease is held; the
+ * holder evaluates the references itself if its transaction is rolled back.
+ *
+ * @see FileService
+ */
+@Service
+@Slf4j
+public class BlobStore {
+
+    /**
+     * Name of the directory containing the blobs, relative to the file storage
+     * root.
+     */
+    private static final String BLOB_DIR = "blobs";
+
+    /**
+     * Name of the directory containing files that are in the process of being
+     * stored, relative to the file storage root.
+     */
+    private static final String STAGING_DIR = "staging";
+
+    /**
+     * Name of the staging directory of this instance if no instance ID is
+     * configured.
+     */
+    private static final String DEFAULT_STAGING_NAME = "local";
+
+    /**
+     * Number of locks used to synchronize operations on blobs.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Initial delay in milliseconds between attempts to acquire the lease of a
+     * blob.
+     */
+    private static final long MIN_RETRY_DELAY_MS = 50;
+
+    /**
+     * Maximum delay in milliseconds between attempts to acquire the lease of a
+     * blob.
+     */
+    private static final long MAX_RETRY_DELAY_MS = 1000;
+
+    /**
+     * Contains the file storage path on the local file system.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.filestorage.dir}")
+    private String fileStorageRoot;
+
+    /**
+     * Whether multiple instances of the back-end may share the file storage.
+     */
+    @Value("${see.app.cluster.enabled}")
+    private boolean clusterEnabled;
+
+    /**
+     * The configured ID of this instance; may be blank.
+     */
+    @Value("${see.app.cluster.instance-id}")
+    private String instanceId;
+
+    /**
+     * Locks to synchronize operations on blobs, selected by digest.
+     */
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    /**
+     * Number of references per digest that were added by transactions that
+     * have not been completed yet.
+     */
+    private final Map<String, Integer> pendingReferences = new ConcurrentHashMap<>();
+
+    /**
+     * Acquires the leases of blobs; {@code null} if cluster coordination is
+     * disabled.
+     */
+    private final LeaseService leaseService;
+
+    /**
+     * The time after which a lease of a blob expires.
+     */
+    private final Duration leaseTtl;
+
+    /**
+     * Fencing tokens of the blob leases held by this instance, by digest.
+     */
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code BlobStore} for a single instance.
+     */
+    public BlobStore() {
+        this(null, 0);
+    }
+
+    /**
+     * Constructs a new {@code BlobStore} and initializes the locks.
+     *
+     * @param leaseService the lease service used to synchronize across
+     * instances if cluster coordination is enabled
+     * @param leaseTtlMs the time in milliseconds after which a lease of a blob
+     * expires; it should exceed the duration of any transaction storing a
+     * blob
+     */
+    @Autowired
+    public BlobStore(LeaseService leaseService, @Value("${see.app.cluster.lease-ttl-ms}") long leaseTtlMs) {
+        this.leaseService = leaseService != null && leaseService.isEnabled() ? leaseService : null;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Creates a new empty file in the staging area.
+     * <p>
+     * The staging area is located on the same file system as the blobs, so
+     * that staged files can be moved atomically into place.
+     * <p>
+     * The caller is responsible to delete the file if it is not passed to
+     * {@link #store(Path, String, LongSupplier)}.
+     *
+     * @return the path of the new file
+     * @throws IOException if the file cannot be created
+     */
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(getStagingDirectory(), "upload-", ".tmp");
+    }
+
+    /**
+     * Creates a new file in the staging area with the same content as the
+     * given staged file.
+     * <p>
+     * The new file is created as hard link if the file system supports it, so
+     * that the content is not copied. Both files must not be modified
+     * afterwards, as they might share their storage with a blob once one of
+     * them has been passed to {@link #store(Path, String, LongSupplier)}.
+     * <p>
+     * The caller is responsible to delete the file if it is not passed to
+     * {@link #store(Path, String, LongSupplier)}.
+     *
+     * @param source the staged file
+     * @return the path of the new file
+     * @throws IOException if the file cannot be created
+     */
+    public Path createStagingLink(Path source) throws IOException {
+        final Path target = getStagingDirectory().resolve("upload-" + UUID.randomUUID() + ".tmp");
+        try {
+            return Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Unable to link staged file {}, falling back to copy: {}", source, e.toString());
+            return Files.copy(source, target);
+        }
+    }
+
+    /**
+     * Returns the path of the staging area of this instance.
+     * <p>
+     * Files in the staging area can be moved atomically into the blob store.
+     * Each instance of the back-end uses a subdirectory named after its
+     * instance ID, so that instances sharing the file storage do not interfere
+     * with each other.
+     *
+     * @return the path of the staging directory
+     * @throws IOException if the directory cannot be accessed or created
+     */
+    public Path getStagingDirectory() throws IOException {
+        return getDirectory(STAGING_DIR + "/" + getStagingName());
+    }
+
+    /**
+     * Deletes all files in the staging area of this instance.
+     * <p>
+     * This is meant to be called on startup to remove leftovers of uploads
+     * that were interrupted by a shutdown. If cluster coordination is enabled
+     * without an explicit instance ID, the staging area might be shared with
+     * other instances and is not cleared.
+     *
+     * @throws IOException if the staging area cannot be accessed
+     */
+    public void clearStagingArea() throws IOException {
+        if (clusterEnabled && (instanceId == null || instanceId.isBlank())) {
+            log.warn("No instance ID configured, skip clearing the shared staging area");
+            return;
+        }
+        try (var entries = Files.list(getStagingDirectory())) {
+            for (Path path : (Iterable<Path>) entries::iterator) {
+                log.info("Deleting abandoned staging file {}", path);
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the staging directory of this instance.
+     * <p>
+     * The name is derived from the configured instance ID. Characters that
+     * are not safe in file names are replaced.
+     *
+     * @return the directory name
+     */
+    private String getStagingName() {
+        if (instanceId == null || instanceId.isBlank()) {
+            return DEFAULT_STAGING_NAME;
+        }
+        final String name = instanceId.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.equals(".") || name.equals("..") ? DEFAULT_STAGING_NAME : name;
+    }
+
+    /**
+     * Returns the path of the blob with given digest.
+     * <p>
+     * Blobs are distributed to subdirectories named after the first two
+     * characters of the digest to keep directories reasonably small.
+     *
+     * @param digest the digest of the content
+     * @return the path of the blob
+     * @throws IOException if the blob directory cannot be accessed
+     */
+    public Path getPath(String digest) throws IOException {
+        if (digest == null || digest.length() < 2) {
+            throw new IllegalArgumentException("Invalid digest: " + digest);
+        }
+        return getDirectory(BLOB_DIR).resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    /**
+     * Stores the given file as blob with given digest.
+     * <p>
+     * If a blob with the same digest already exists, the given file is
+     * deleted. Otherwise, it is moved into place. The file should be located in
+     * the file storage, e.g., in the staging area, so that it can be moved
+     * atomically.
+     * <p>
+     * The caller must persist a reference to the blob within the current
+     * transaction. Until that transaction is completed, the blob is protected
+     * from being deleted by {@link #release(String, LongSupplier)}. If the
+     * transaction is rolled back, the blob is deleted unless it is referenced
+     * otherwise.
+     * <p>
+     * If cluster coordination is enabled and another instance holds the lease
+     * of the blob, this waits until the lease is released or expires.
+     *
+     * @param source the file containing the content
+     * @param digest the digest of the content
+     * @param referenceCount supplies the number of persisted references to the
+     * blob; it is invoked if the current transaction is rolled back
+     * @return the path of the blob
+     * @throws IOException if the file cannot be moved or deleted, or if the
+     * lease of the blob cannot be acquired
+     */
+    public Path store(Path source, String digest, LongSupplier referenceCount) throws IOException {
+        final Path blobPath = getPath(digest);
+        final ReentrantLock lock = getLock(digest);
+        lock.lock();
+        try {
+            if (!acquireLease(digest, leaseTtl)) {
+                throw new IOException("Blob " + digest + " is in use by another instance.");
+            }
+            storeLeased(source, blobPath, digest, referenceCount);
+        } finally {
+            lock.unlock();
+        }
+        return blobPath;
+    }
+
+    /**
+     * Moves the given file into place unless the blob already exists.
+     * <p>
+     * The caller must hold the lock and, if cluster coordination is enabled,
+     * the lease of the blob. The lease is released unless a pending reference
+     * has been added.
+     *
+     * @param source the file containing the content
+     * @param blobPath the path of the blob
+     * @param digest the digest of the content
+     * @param referenceCount supplies the number of persisted references to the
+     * blob
+     * @throws IOException if the file cannot be moved or deleted
+     */
+    private void storeLeased(Path source, Path blobPath, String digest, LongSupplier referenceCount)
+            throws IOException {
+        try {
+            if (Files.exists(blobPath)) {
+                log.debug("Reusing existing blob {}", digest);
+                Files.delete(source);
+            } else {
+                Files.createDirectories(blobPath.getParent());
+                try {
+                    Files.move(source, blobPath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    log.warn("Atomic move not supported, falling back to copy: {}", source);
+                    Files.move(source, blobPath);
+                }
+                log.debug("Stored new blob {}", digest);
+            }
+            addPendingReference(digest, referenceCount);
+        } finally {
+            releaseLeaseIfUnused(digest);
+        }
+    }
+
+    /**
+     * Releases a reference to the blob with given digest.
+     * <p>
+     * The blob is deleted if it is no longer referenced. If a transaction is
+     * active, this is evaluated after the transaction has been committed.
+     *
+     * @param digest the digest of the content
+     * @param referenceCount supplies the number of persisted references to the
+     * blob; it is invoked after the current transaction has been committed
+     */
+    public void release(String digest, LongSupplier referenceCount) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteIfUnreferenced(digest, referenceCount);
+                }
+            });
+        } else {
+            deleteIfUnreferenced(digest, referenceCount);
+        }
+    }
+
+    /**
+     * Deletes the blob with given digest if it is not referenced.
+     * <p>
+     * If cluster coordination is enabled and another instance holds the lease
+     * of the blob, it is kept, as that instance has pending references to it.
+     * <p>
+     * I/O errors are logged, but not propagated, as the reference to the blob
+     * has already been removed.
+     *
+     * @param digest the digest of the content
+     * @param referenceCount supplies the number of persisted references to the
+     * blob
+     */
+    private void deleteIfUnreferenced(String digest, LongSupplier referenceCount) {
+        final ReentrantLock lock = getLock(digest);
+        lock.lock();
+        try {
+            if (pendingReferences.containsKey(digest)) {
+                log.debug("Blob {} is still referenced", digest);
+                return;
+            }
+            if (!acquireLease(digest, Duration.ZERO)) {
+                log.debug("Blob {} is in use by another instance", digest);
+                return;
+            }
+            try {
+                if (referenceCount.getAsLong() > 0) {
+                    log.debug("Blob {} is still referenced", digest);
+                } else if (Files.deleteIfExists(getPath(digest))) {
+                    log.info("Deleted unreferenced blob {}", digest);
+                }
+            } finally {
+                releaseLeaseIfUnused(digest);
+            }
+        } catch (IOException e) {
+            log.error("Unable to delete blob {}: ", digest, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the lease of the blob with given digest unless it is already
+     * held by this instance, retrying with increasing delays until the timeout
+     * elapses.
+     * <p>
+     * The caller must hold the lock of the blob. This always succeeds if
+     * cluster coordination is disabled.
+     *
+     * @param digest the digest of the content
+     * @param timeout the maximum time to wait
+     * @return {@code true} if the lease is held, or {@code false} if the
+     * timeout elapsed
+     * @throws InterruptedIOException if the thread is interrupted while
+     * waiting
+     */
+    private boolean acquireLease(String digest, Duration timeout) throws InterruptedIOException {
+        if (leaseService == null || leases.containsKey(digest)) {
+            return true;
+        }
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        long delayMs = MIN_RETRY_DELAY_MS;
+        while (true) {
+            final Long token = leaseService.tryAcquire(leaseName(digest), leaseTtl);
+            if (token != null) {
+                leases.put(digest, token);
+                return true;
+            }
+            final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(delayMs, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for blob " + digest);
+            }
+            delayMs = Math.min(delayMs * 2, MAX_RETRY_DELAY_MS);
+        }
+    }
+
+    /**
+     * Releases the lease of the blob with given digest if this instance holds
+     * it and has no pending references to the blob.
+     * <p>
+     * The caller must hold the lock of the blob.
+     *
+     * @param digest the digest of the content
+     */
+    private void releaseLeaseIfUnused(String digest) {
+        if (leaseService == null || pendingReferences.containsKey(digest)) {
+            return;
+        }
+        final Long token = leases.remove(digest);
+        if (token != null) {
+            leaseService.release(leaseName(digest), token);
+        }
+    }
+
+    /**
+     * Returns the name of the lease of a blob.
+     *
+     * @param digest the digest of the content
+     * @return the lease name
+     */
+    private static String leaseName(String digest) {
+        return "blob:" + digest;
+    }
+
+    /**
+     * Registers a pending reference for the blob with given digest.
+     * <p>
+     * The pending reference is removed when the current transaction is
+     * completed. If the transaction is rolled back, the blob is deleted in case
+     * it is not referenced anymore. The lease of the blob is held until the
+     * last pending reference of this instance has been removed.
+     *
+     * @param digest the digest of the content
+     * @param referenceCount supplies the number of persisted references to the
+     * blob
+     */
+    private void addPendingReference(String digest, LongSupplier referenceCount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        pendingReferences.merge(digest, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                final ReentrantLock lock = getLock(digest);
+                lock.lock();
+                try {
+                    pendingReferences.computeIfPresent(digest, (k, count) -> count > 1 ? count - 1 : null);
+                    if (status == STATUS_ROLLED_BACK) {
+                        log.debug("Reference to blob {} was rolled back", digest);
+                        deleteIfUnreferenced(digest, referenceCount);
+                    }
+                    releaseLeaseIfUnused(digest);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the lock responsible for the given digest.
+     *
+     * @param digest the digest of the content
+     * @return the lock
+     */
+    private ReentrantLock getLock(String digest) {
+        return locks[Math.floorMod(digest.hashCode(), locks.length)];
+    }
+
+    /**
+     * Returns the path of a directory in the file storage.
+     * <p>
+     * Tries to create the directory if it does not yet exist.
+     *
+     * @param name the name of the directory relative to the file storage root
+     * @return the path of the directory
+     * @throws IOException if there is a problem accessing or creating the
+     * directory, or if the path is not a directory
+     */
+    private Path getDirectory(String name) throws IOException {
+        final Path path = Paths.get(fileStorageRoot).toAbsolutePath().resolve(name);
+        if (!Files.exists(path)) {
+            try {
+                return Files.createDirectories(path);
+            } catch (IOException e) {
+                throw new IOException("File Storage Path does not exist and could not be created: " + path.toString(), e);
+            }
+        }
+        if (!Files.isDirectory(path, NOFOLLOW_LINKS)) {
+            throw new IOException("File Storage Path is not a directory: " + path.toString());
+        }
+        return path;
+    }
+}
@@ -0,0 +1,290 @@
+package de.unibremen.swt.see.manager.service;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Event;
+import de.unibremen.swt.see.manager.model.ServerStatusType;
+import jakarta.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Updates the server status based on the event stream of the Docker daemon.
+ * <p>
+ * Instead of inspecting every container periodically, the status of a server
+ * is updated as soon as its container is started, dies, or is destroyed. The
+ * full status update in
+ * {@link de.unibremen.swt.see.manager.SeeManagerApplication} only serves as
+ * reconciliation in case events have been missed and runs much less
+ * frequently. Events of servers that are being started or stopped are applied
+ * once the operation has completed.
+ * <p>
+ * If the stream drops, e.g., because the Docker daemon restarts, the
+ * subscription is renewed with increasing delays. Events that happened in the
+ * meantime are replayed from the time of the last received event.
+ * <p>
+ * If multiple instances share the same database, all of them subscribe, but
+ * only the elected leader updates the status. Since the other instances
+ * still advance the replay position, events received before an instance
+ * becomes leader are not applied later; instead, all server status are
+ * updated once this instance has been elected.
+ *
+ * @see ContainerService#subscribeEvents(Long, ResultCallback)
+ */
+@Service
+@Slf4j
+public class ContainerEventListener {
+
+    /**
+     * Initial delay in milliseconds before subscribing again.
+     */
+    static final long MIN_RECONNECT_DELAY_MS = 1000;
+
+    /**
+     * Maximum delay in milliseconds before subscribing again.
+     */
+    static final long MAX_RECONNECT_DELAY_MS = 60000;
+
+    /**
+     * Used to subscribe to container events.
+     */
+    private final ContainerService containerService;
+
+    /**
+     * Used to update the server status.
+     */
+    private final ServerService serverService;
+
+    /**
+     * Determines whether this instance updates the status.
+     */
+    private final LeaderElection leaderElection;
+
+    /**
+     * Whether the status is updated based on container events.
+     */
+    private final boolean enabled;
+
+    /**
+     * Schedules subscription attempts.
+     */
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("docker-events").factory());
+
+    /**
+     * The current subscription, or {@code null}.
+     */
+    private volatile Closeable subscription;
+
+    /**
+     * The time in seconds since the epoch of the last received event, or
+     * {@code null} if no event has been received yet.
+     */
+    private volatile Long lastEventTime;
+
+    /**
+     * The delay in milliseconds before the next attempt to subscribe again.
+     */
+    private volatile long reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+
+    /**
+     * Whether the listener has been stopped.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Creates the listener.
+     *
+     * @param containerService the container service
+     * @param serverService the server service
+     * @param leaderElection the leader election
+     * @param enabled whether the status is updated based on container events
+     */
+    public ContainerEventListener(
+            ContainerService containerService,
+            ServerService serverService,
+            LeaderElection leaderElection,
+            @Value("${see.app.docker.events.enabled}") boolean enabled) {
+        this.containerService = containerService;
+        this.serverService = serverService;
+        this.leaderElection = leaderElection;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Subscribes to container events once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Server status updates based on container events are disabled");
+            return;
+        }
+        scheduler.execute(this::subscribe);
+    }
+
+    /**
+     * Unsubscribes from container events.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        scheduler.shutdownNow();
+        close(subscription);
+    }
+
+    /**
+     * Subscribes to container events, replaying events since the last
+     * received one.
+     */
+    private void subscribe() {
+        if (stopped) {
+            return;
+        }
+        final Callback callback = new Callback();
+        try {
+            subscription = containerService.subscribeEvents(lastEventTime, callback);
+        } catch (RuntimeException e) {
+            callback.onError(e);
+        }
+    }
+
+    /**
+     * Updates all server status after this instance has become leader.
+     * <p>
+     * The update runs asynchronously, so that the heartbeat of the leader
+     * election is not delayed by the Docker daemon.
+     *
+     * @param event the election event
+     */
+    @EventListener(LeaderElection.Elected.class)
+    public void reconcile(LeaderElection.Elected event) {
+        try {
+            scheduler.execute(() -> {
+                if (stopped || !leaderElection.isLeader()) {
+                    return;
+                }
+                log.info("Updating server status after instance {} has been elected...", event.instanceId());
+                try {
+                    serverService.updateStatus();
+                } catch (RuntimeException e) {
+                    log.error("Failed to update server status: ", e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The scheduler has been shut down
+        }
+    }
+
+    /**
+     * Schedules the next attempt to subscribe, doubling the delay for the
+     * attempt after.
+     */
+    private void resubscribe() {
+        if (stopped) {
+            return;
+        }
+        final long delayMs = reconnectDelayMs;
+        reconnectDelayMs = Math.min(delayMs * 2, MAX_RECONNECT_DELAY_MS);
+        log.debug("Subscribing to container events again in {} ms", delayMs);
+        try {
+            scheduler.schedule(this::subscribe, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // The scheduler has been shut down
+        }
+    }
+
+    /**
+     * Updates the status of the server a container event relates to.
+     *
+     * @param event the container event
+     */
+    void handle(Event event) {
+        if (event.getTime() != null) {
+            lastEventTime = event.getTime();
+        }
+        final UUID serverId = ContainerService.getServerId(event);
+        if (serverId == null || !leaderElection.isLeader()) {
+            return;
+        }
+        final ServerStatusType status = switch (String.valueOf(event.getAction())) {
+            case "start" -> ServerStatusType.ONLINE;
+            case "die", "destroy" -> ServerStatusType.OFFLINE;
+            default -> null;
+        };
+        if (status == null) {
+            return;
+        }
+        log.debug("Container of server {} received event {}", serverId, event.getAction());
+        try {
+            serverService.updateStatus(serverId, status);
+        } catch (RuntimeException e) {
+            log.error("Failed to update status of server {}: ", serverId, e);
+        }
+    }
+
+    /**
+     * Closes a subscription quietly.
+     *
+     * @param closeable the subscription, or {@code null}
+     */
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Failed to close subscription: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Receives the events of a single subscription.
+     */
+    private class Callback extends ResultCallback.Adapter<Event> {
+
+        /**
+         * Whether the subscription has ended, so that it is renewed only once.
+         */
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        @Override
+        public void onStart(Closeable stream) {
+            super.onStart(stream);
+            reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+            log.info("Subscribed to container events");
+        }
+
+        @Override
+        public void onNext(Event event) {
+            handle(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (ended.compareAndSet(false, true) && !stopped) {
+                log.warn("Container event stream failed: {}", throwable.getMessage());
+                ContainerEventListener.close(this);
+                resubscribe();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (ended.compareAndSet(false, true) && !stopped) {
+                log.warn("Container event stream ended");
+                resubscribe();
+            }
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package de.unibremen.swt.see.manager.service;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.EventsCmd;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.ConflictException;
 import com.github.dockerjava.api.exception.InternalServerErrorException;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.exception.NotModifiedException;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
 import com.github.dockerjava.api.model.ExposedPort;
 import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.PortBinding;
@@ -22,6 +27,10 @@ import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -52,6 +61,12 @@ public class ContainerService {
      */
     private DockerClient dockerClient;
 
+    /**
+     * Used to stream events; in contrast to {@link #dockerClient}, responses
+     * do not time out, since the stream is idle while nothing happens.
+     */
+    private DockerClient eventsClient;
+
     /**
      * The URI used to connect to the Docker instance.
      * <p>
@@ -87,6 +102,29 @@ public class ContainerService {
      */
     final static int MAX_RETRIES = 3;
 
+    /**
+     * Prefix of the names of game server containers, followed by the ID of
+     * the server.
+     */
+    final static String CONTAINER_NAME_PREFIX = "see-";
+
+    /**
+     * Label of game server containers holding the ID of the server.
+     * <p>
+     * The label allows to retrieve all game server containers with a single
+     * request. Containers created by earlier versions do not have the label.
+     */
+    final static String SERVER_ID_LABEL = "de.unibremen.swt.see.server-id";
+
+    /**
+     * The container events that change the status of a server.
+     * <p>
+     * {@code kill} is not included, since it only reports a signal sent to the
+     * container, which does not necessarily terminate it. A container that
+     * terminates reports {@code die} in any case.
+     */
+    final static String[] STATUS_EVENTS = {"start", "die", "destroy"};
+
     /**
      * Private exception for the {@code retry} method, indicating that the
      * maximal number of retries has exceeded and the execution still failed.
@@ -145,6 +183,10 @@ public class ContainerService {
                 .build();
 
         this.dockerClient = DockerClientImpl.getInstance(config, httpClient);
+        this.eventsClient = DockerClientImpl.getInstance(config, new ZerodepDockerHttpClient.Builder()
+                .dockerHost(config.getDockerHost())
+                .connectionTimeout(Duration.ofSeconds(30))
+                .build());
 
         try {
             retry(dockerClient.pingCmd()::exec, MAX_RETRIES);
@@ -168,7 +210,7 @@ public class ContainerService {
      * between existence check and start execution
      */
     public void startContainer(Server server) throws IOException, NotModifiedException, NotFoundException, InternalServerErrorException {
-        final String containerName = "see-" + server.getId();
+        final String containerName = CONTAINER_NAME_PREFIX + server.getId();
         String containerId = server.getContainerId();
 
         if (containerId == null || !containerExists(containerId)) {
@@ -240,6 +282,33 @@ public class ContainerService {
         return containerInfo != null && containerInfo.getState().getRunning();
     }
 
+    /**
+     * Retrieves the state of all labeled game server containers with a single
+     * request.
+     * <p>
+     * Containers without the {@link #SERVER_ID_LABEL} label, i.e., containers
+     * created by earlier versions, are not included; use
+     * {@link #isRunning(Server)} for their servers.
+     *
+     * @return whether the container is running, by server ID
+     */
+    public Map<UUID, Boolean> getRunningStates() {
+        final List<Container> containers = retry(dockerClient.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(List.of(SERVER_ID_LABEL))::exec,
+                MAX_RETRIES);
+        final Map<UUID, Boolean> states = new HashMap<>();
+        for (Container container : containers) {
+            final UUID serverId = parseServerId(container.getLabels() != null
+                    ? container.getLabels().get(SERVER_ID_LABEL)
+                    : null);
+            if (serverId != null) {
+                states.merge(serverId, "running".equals(container.getState()), Boolean::logicalOr);
+            }
+        }
+        return states;
+    }
+
     /**
      * Checks if a container exists for given server.
      * <p>
@@ -254,6 +323,73 @@ public class ContainerService {
         return getContainerInfo(server) != null;
     }
 
+    /**
+     * Subscribes to the events of containers that change the status of
+     * servers.
+     * <p>
+     * The events are streamed asynchronously to the given callback until the
+     * callback is closed or the connection drops, in which case the
+     * callback's {@code onError} or {@code onComplete} method is called.
+     *
+     * @param <T> the type of the callback
+     * @param since the time in seconds since the epoch from which past events
+     * are replayed before new events are streamed, or {@code null} to only
+     * stream new events
+     * @param callback the callback receiving the events
+     * @return the callback, which can be closed to unsubscribe
+     * @see #getServerId(Event)
+     */
+    public <T extends ResultCallback<Event>> T subscribeEvents(Long since, T callback) {
+        final EventsCmd command = eventsClient.eventsCmd()
+                .withEventTypeFilter(EventType.CONTAINER)
+                .withEventFilter(STATUS_EVENTS);
+        if (since != null) {
+            command.withSince(String.valueOf(since));
+        }
+        return command.exec(callback);
+    }
+
+    /**
+     * Determines the server that a container event relates to.
+     *
+     * @param event the container event
+     * @return the ID of the server, or {@code null} if the container is not a
+     * game server container
+     */
+    public static UUID getServerId(Event event) {
+        if (event.getActor() == null || event.getActor().getAttributes() == null) {
+            return null;
+        }
+        // Container labels are included in the attributes
+        final Map<String, String> attributes = event.getActor().getAttributes();
+        final UUID serverId = parseServerId(attributes.get(SERVER_ID_LABEL));
+        if (serverId != null) {
+            return serverId;
+        }
+        final String name = attributes.get("name");
+        if (name == null || !name.startsWith(CONTAINER_NAME_PREFIX)) {
+            return null;
+        }
+        return parseServerId(name.substring(CONTAINER_NAME_PREFIX.length()));
+    }
+
+    /**
+     * Parses a server ID.
+     *
+     * @param value the string representation of the ID, or {@code null}
+     * @return the server ID, or {@code null} if the value is not a valid ID
+     */
+    private static UUID parseServerId(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Gets the container information for given server.
      *
@@ -297,6 +433,7 @@ public class ContainerService {
                         .withPortBindings(portBinding)
                 )
                 .withExposedPorts(exposedPort)
+                .withLabels(Map.of(SERVER_ID_LABEL, serverId))
                 .withEnv(
                         "SEE_BACKEND_API=" + backendApi,
                         "SEE_SERVER_ID=" + serverId,
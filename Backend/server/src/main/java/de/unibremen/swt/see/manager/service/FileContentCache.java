@@ -0,0 +1,126 @@
+package de.unibremen.swt.see.manager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Size-bounded in-memory cache for stored file contents.
+ * <p>
+ * When a game server starts, all connected clients download the same few files
+ * within a short time. This cache keeps the contents of such files in memory,
+ * so that they are read from the file system only once. Concurrent requests for
+ * a file that is not yet cached wait for a single read.
+ * <p>
+ * The total size of the cached contents is limited by a configurable byte
+ * budget. Entries are evicted based on their access frequency and recency
+ * (Caffeine's W-TinyLFU policy). Files larger than a quarter of the budget are
+ * not cached at all, so that a single large file cannot displace all others.
+ * <p>
+ * Hit, miss, and eviction counters are published as {@code cache.*} metrics
+ * with tag {@code cache=files}.
+ *
+ * @see FileService#getCachedContent(de.unibremen.swt.see.manager.model.File)
+ */
+@Component
+@Slf4j
+public class FileContentCache {
+
+    /**
+     * Name of the cache used for metrics.
+     */
+    private static final String CACHE_NAME = "files";
+
+    /**
+     * Maximum size of a single entry in bytes.
+     */
+    private final long maxEntryBytes;
+
+    /**
+     * Cached file contents by file system path.
+     * <p>
+     * {@code null} if caching is disabled.
+     */
+    private final Cache<Path, ByteBuffer> cache;
+
+    /**
+     * Creates the cache with given byte budget.
+     *
+     * @param maxBytes the maximum total size of the cached contents in bytes;
+     * {@code 0} disables the cache
+     * @param meterRegistry the registry to publish the cache metrics to
+     */
+    public FileContentCache(@Value("${see.app.filecache.max-bytes}") long maxBytes, MeterRegistry meterRegistry) {
+        if (maxBytes <= 0) {
+            log.info("File content cache is disabled");
+            this.maxEntryBytes = 0;
+            this.cache = null;
+            return;
+        }
+        this.maxEntryBytes = maxBytes / 4;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Path, ByteBuffer>weigher((path, content) -> content.capacity())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the content of the file at given path.
+     * <p>
+     * The file is read into the cache if it is not yet present. Files that
+     * exceed the maximum entry size are neither read nor cached.
+     *
+     * @param path the path of the file
+     * @param size the expected size of the file in bytes
+     * @return a read-only buffer containing the file content, or {@code null}
+     * if the file is not eligible for caching
+     * @throws IOException if the file cannot be read
+     */
+    public ByteBuffer get(Path path, long size) throws IOException {
+        if (cache == null || size > maxEntryBytes) {
+            return null;
+        }
+        try {
+            return cache.get(path, FileContentCache::read).asReadOnlyBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Removes the content of the file at given path from the cache.
+     *
+     * @param path the path of the file
+     */
+    public void invalidate(Path path) {
+        if (cache != null) {
+            cache.invalidate(path);
+        }
+    }
+
+    /**
+     * Reads the content of the file at given path.
+     *
+     * @param path the path of the file
+     * @return a buffer containing the file content
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    private static ByteBuffer read(Path path) {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -7,19 +7,36 @@ import de.unibremen.swt.see.manager.repository.FileRepository;
 import jakarta.persistence.EntityNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.LongSupplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -29,8 +46,17 @@ import org.springframework.web.multipart.MultipartFile;
  * creating, retrieving, updating, and deleting files. It encapsulates the
  * business logic and acts as an intermediary between the controller layer and
  * the data access layer.
+ * <p>
+ * File contents are stored in a content-addressed {@link BlobStore}, so that
+ * identical uploads share the same storage. Files that were uploaded before
+ * the blob store was introduced are located in a directory per server and are
+ * migrated by {@link #migrateLegacyFiles()}.
+ * <p>
+ * Optionally, contents are compressed at rest using a {@link StorageCodec}.
+ * Formats that are already compressed are stored as they are.
  *
  * @see FileRepository
+ * @see BlobStore
  * @see de.unibremen.swt.see.manager.controller.FileController
  */
 @Service
@@ -39,11 +65,50 @@ import org.springframework.web.multipart.MultipartFile;
 @Slf4j
 public class FileService {
 
+    /**
+     * The algorithm used to compute the digest of file contents.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * File extensions of already compressed formats.
+     * <p>
+     * Files of these formats are not compressed again.
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "jar",
+            "png", "jpg", "jpeg", "gif", "webp", "mp3", "mp4", "ogg", "webm");
+
     /**
      * Enables file data persistence and retrieval for this service.
      */
     private final FileRepository fileRepo;
 
+    /**
+     * Stores the file contents.
+     */
+    private final BlobStore blobStore;
+
+    /**
+     * Keeps frequently downloaded file contents in memory.
+     */
+    private final FileContentCache contentCache;
+
+    /**
+     * Caches the servers of files for access control.
+     */
+    private final AccessDecisionCache accessDecisions;
+
+    /**
+     * Memoizes files looked up during a request.
+     */
+    private final RequestEntityCache requestCache;
+
+    /**
+     * Used to migrate each legacy file in a transaction of its own.
+     */
+    private final PlatformTransactionManager transactionManager;
+
     /**
      * Contains the file storage path on the local file system.
      * <p>
@@ -53,12 +118,21 @@ public class FileService {
     @Value("${see.app.filestorage.dir}")
     private String fileStorageRoot;
 
+    /**
+     * The codec used to compress new file contents.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.filestorage.codec}")
+    private StorageCodec storageCodec;
+
     /**
      * Creates a new file from the provided attributes.
      * <p>
-     * The file metadata is stored in the database and the content is stored on
-     * the local file system. A reference to the associated server and file type
-     * is stored in the metadata.
+     * The file metadata is stored in the database and the content is stored in
+     * the blob store. A reference to the associated server and file type is
+     * stored in the metadata.
      *
      * @param server the server instance this file belongs to
      * @param projectType the type of the project
@@ -78,24 +152,112 @@ public class FileService {
         file.setServer(server);
         file.setProjectType(projectType);
 
-        Path path;
         try {
-            path = storeFile(file, multipartFile);
+            checkNotExists(file);
+            storeFile(file, multipartFile);
+        } catch (IOException e) {
+            throw new IOException("Error persisting file.", e);
+        }
+
+        return fileRepo.save(file);
+    }
+
+    /**
+     * Creates a new file from a stream.
+     * <p>
+     * The content is streamed into the blob store while its size and digest
+     * are computed, so that it is written only once. Apart from that, this
+     * works like {@link #create(Server, ProjectType, MultipartFile)}.
+     *
+     * @param server the server instance this file belongs to
+     * @param projectType the type of the project
+     * @param name the name of the file
+     * @param contentType the media type of the file, or {@code null} if
+     * unknown
+     * @param inputStream the file content
+     * @return the created file, or {@code null} if the file content is empty.
+     * @throws java.io.IOException if there was an I/O error while storing the
+     * file
+     */
+    public File create(Server server, ProjectType projectType, String name, String contentType, InputStream inputStream)
+            throws IOException {
+        File file = new File();
+        file.setName(name);
+        file.setContentType(contentType);
+        file.setServer(server);
+        file.setProjectType(projectType);
+
+        try {
+            checkNotExists(file);
+            if (storeFile(file, inputStream) == null) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new IOException("Error persisting file.", e);
+        }
+
+        return fileRepo.save(file);
+    }
+
+    /**
+     * Creates a new file from content in the staging area.
+     * <p>
+     * The staged file is moved into the blob store without copying its
+     * content. Apart from that, this works like
+     * {@link #create(Server, ProjectType, MultipartFile)}.
+     *
+     * @param server the server instance this file belongs to
+     * @param projectType the type of the project
+     * @param name the name of the file
+     * @param contentType the media type of the file, or {@code null} if
+     * unknown
+     * @param stagingPath the path of the content in the staging area
+     * @param digest the SHA-256 digest computed over the staged content; it is
+     * reset by this method
+     * @return the created file
+     * @throws java.io.IOException if there was an I/O error while storing the
+     * file
+     * @see BlobStore#createStagingFile()
+     */
+    public File create(Server server, ProjectType projectType, String name, String contentType, Path stagingPath,
+            MessageDigest digest) throws IOException {
+        File file = new File();
+        file.setName(name);
+        file.setContentType(contentType);
+        file.setServer(server);
+        file.setProjectType(projectType);
+
+        try {
+            checkNotExists(file);
+            storeStagedFile(file, stagingPath, digest);
         } catch (IOException e) {
             throw new IOException("Error persisting file.", e);
         }
-        file.setSize(Files.size(path));
 
         return fileRepo.save(file);
     }
 
     /**
      * Retrieves a file by its ID.
+     * <p>
+     * The file is loaded only once per request.
      *
      * @param fileId the ID of the file to retrieve
      * @return the file if found, or {@code null} if not found
+     * @see RequestEntityCache
      */
+    @Transactional(readOnly = true)
     public File get(UUID fileId) {
+        return requestCache.get(File.class, fileId, this::load);
+    }
+
+    /**
+     * Loads a file by its ID.
+     *
+     * @param fileId the ID of the file to load
+     * @return the file if found, or {@code null} if not found
+     */
+    private File load(UUID fileId) {
         log.info("Fetching file by id {}", fileId);
         Optional<File> optFile = fileRepo.findById(fileId);
         if (optFile.isEmpty()) {
@@ -126,8 +288,10 @@ public class FileService {
     /**
      * Deletes a file.
      * <p>
-     * Deletes the file from local file system and the file metadata object from
-     * database.
+     * Deletes the file metadata object from database and removes the content
+     * from the cache. The content is deleted from the blob store after the
+     * transaction has been committed, unless it is still referenced by other
+     * files.
      * <p>
      * Does not throw I/O exception if the file to delete was not found.
      *
@@ -136,7 +300,19 @@ public class FileService {
      * file
      */
     public void delete(File file) throws IOException {
-        Path filePath = getPath(file);
+        fileRepo.delete(file);
+        contentCache.invalidate(getPath(file));
+        accessDecisions.invalidateFile(file.getId());
+        requestCache.invalidate(File.class, file.getId());
+
+        if (file.getDigest() != null) {
+            final String blobName = getBlobName(file);
+            log.info("Releasing blob {} of file {}", blobName, file.getId());
+            blobStore.release(blobName, referenceCount(file));
+            return;
+        }
+
+        Path filePath = getLegacyPath(file);
         log.info("Removing file {}", filePath);
 
         if (Files.exists(filePath) && !Files.isRegularFile(filePath)) {
@@ -148,7 +324,6 @@ public class FileService {
         } catch (NoSuchFileException e) {
             log.warn("File to delete does not exist: {}", filePath);
         }
-        fileRepo.delete(file);
     }
 
     /**
@@ -172,6 +347,18 @@ public class FileService {
         delete(file);
     }
 
+    /**
+     * Retrieves the ID of the server a file belongs to, without loading the
+     * file.
+     *
+     * @param fileId the ID of the file
+     * @return the server ID, or {@code null} if the file does not exist
+     */
+    @Transactional(readOnly = true)
+    public UUID getServerId(UUID fileId) {
+        return fileRepo.findServerIdById(fileId).orElse(null);
+    }
+
     /**
      * Retrieves all files of a server.
      *
@@ -184,6 +371,8 @@ public class FileService {
 
     /**
      * Deletes all files of a server.
+     * <p>
+     * Contents shared with files of other servers are retained.
      *
      * @param server the server to delete files for
      * @throws IOException if a file cannot be deleted
@@ -195,12 +384,136 @@ public class FileService {
             delete(file);
         }
 
-        Files.delete(getServerUploadPath(server));
+        Files.deleteIfExists(getLegacyServerPath(server));
+    }
+
+    /**
+     * Moves files from the legacy per-server directories into the blob store.
+     * <p>
+     * Before the introduction of the blob store, each file was stored in a
+     * directory named after its server. This method copies these files into
+     * the blob store, computing their digests on the way, and records the
+     * digests in the database.
+     * <p>
+     * Each file is migrated in a transaction of its own. The legacy file and
+     * its server directory, if empty, are only removed after that transaction
+     * has been committed, so that an interrupted migration can be resumed on
+     * the next start. Leftovers of files that were migrated before are removed
+     * as well.
+     * <p>
+     * Files that cannot be migrated are logged and left in place.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void migrateLegacyFiles() {
+        final TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (File file : fileRepo.findAll()) {
+            if (file.getServer() == null || file.getName() == null || file.getName().isEmpty()) {
+                continue;
+            }
+            final Path legacyPath = getLegacyPath(file);
+            if (!Files.isRegularFile(legacyPath, NOFOLLOW_LINKS)) {
+                continue;
+            }
+            if (file.getDigest() != null) {
+                log.info("Removing already migrated file {}", legacyPath);
+                deleteLegacyFile(legacyPath);
+                continue;
+            }
+
+            try {
+                transaction.executeWithoutResult(status -> {
+                    try {
+                        migrateLegacyFile(file, legacyPath);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                log.error("Unable to migrate file {} to blob store: ", file.getId(), e.getCause());
+            } catch (RuntimeException e) {
+                log.error("Unable to migrate file {} to blob store: ", file.getId(), e);
+            }
+        }
     }
 
+    /**
+     * Copies a legacy file into the blob store and stores its digest.
+     * <p>
+     * The legacy file is deleted after the current transaction has been
+     * committed.
+     *
+     * @param file the file metadata
+     * @param legacyPath the path of the legacy file
+     * @throws IOException if the file cannot be copied into the blob store
+     */
+    private void migrateLegacyFile(File file, Path legacyPath) throws IOException {
+        log.info("Migrating file {} to blob store", legacyPath);
+
+        final Path stagingPath = blobStore.createStagingFile();
+        try {
+            final MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(legacyPath), digest)) {
+                Files.copy(in, stagingPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            storeStagedFile(file, stagingPath, digest);
+        } finally {
+            Files.deleteIfExists(stagingPath);
+        }
+        fileRepo.save(file);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteLegacyFile(legacyPath);
+            }
+        });
+    }
 
     /**
-     * Stores given file on local file system.
+     * Deletes a legacy file and its server directory if it is empty
+     * afterwards.
+     * <p>
+     * I/O errors are logged, but not propagated, as the content is already
+     * stored in the blob store.
+     *
+     * @param legacyPath the path of the legacy file
+     */
+    private void deleteLegacyFile(Path legacyPath) {
+        try {
+            Files.deleteIfExists(legacyPath);
+            final Path serverPath = legacyPath.getParent();
+            try (var entries = Files.list(serverPath)) {
+                if (entries.findAny().isEmpty()) {
+                    Files.delete(serverPath);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to delete migrated file {}: ", legacyPath, e);
+        }
+    }
+
+    /**
+     * Checks that the server of given file does not have a file with the same
+     * name yet.
+     *
+     * @param file the prepared file metadata
+     * @throws IOException if the server already has a file with this name
+     */
+    private void checkNotExists(File file) throws IOException {
+        if (fileRepo.existsByServerAndName(file.getServer(), file.getName())) {
+            throw new IOException("File already exists: " + file.getName());
+        }
+    }
+
+    /**
+     * Stores given multipart file in the blob store.
+     * <p>
+     * The multipart file is moved to the staging area. This does not copy the
+     * data if the temporary location of multipart files is on the same file
+     * system. Afterwards, its SHA-256 digest is computed and the file is
+     * stored using {@link #storeStagedFile(File, Path, MessageDigest)}.
      *
      * @param file the prepared file metadata
      * @param multipartFile the file content
@@ -208,65 +521,262 @@ public class FileService {
      * @throws IOException if there was an I/O error while storing the file
      */
     private Path storeFile(File file, MultipartFile multipartFile) throws IOException {
-        Path filePath = getPath(file);
-        if (Files.exists(filePath)) {
-            throw new IOException("File already exists: " + filePath.toString());
+        final Path stagingPath = blobStore.createStagingFile();
+        try {
+            try {
+                multipartFile.transferTo(stagingPath.toFile());
+            } catch (IOException e) {
+                throw new IOException("Unable to save file: " + file.getName(), e);
+            }
+            return storeStagedFile(file, stagingPath, digest(stagingPath));
+        } finally {
+            Files.deleteIfExists(stagingPath);
         }
+    }
 
-        try (InputStream inputStream = multipartFile.getInputStream()) {
-            Files.copy(inputStream, filePath);
-        } catch (IOException e) {
-            throw new IOException("Unable to save file: " + file.getName(), e);
+    /**
+     * Stores the content of given stream in the blob store.
+     * <p>
+     * The content is written to the staging area while its SHA-256 digest is
+     * computed on the fly. Afterwards, it is stored using
+     * {@link #storeStagedFile(File, Path, MessageDigest)}. Empty content is
+     * discarded.
+     *
+     * @param file the prepared file metadata
+     * @param inputStream the file content
+     * @return the path to where the file was stored, or {@code null} if the
+     * content is empty
+     * @throws IOException if there was an I/O error while storing the file
+     */
+    private Path storeFile(File file, InputStream inputStream) throws IOException {
+        final Path stagingPath = blobStore.createStagingFile();
+        try {
+            final MessageDigest digest = newDigest();
+            try (InputStream digestStream = new DigestInputStream(inputStream, digest)) {
+                Files.copy(digestStream, stagingPath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new IOException("Unable to save file: " + file.getName(), e);
+            }
+            if (Files.size(stagingPath) == 0) {
+                return null;
+            }
+            return storeStagedFile(file, stagingPath, digest);
+        } finally {
+            Files.deleteIfExists(stagingPath);
         }
-        return filePath;
     }
 
     /**
-     * Generates the file system path of the directory where all files of a
-     * specific server are stored.
+     * Moves a staged file into the blob store.
      * <p>
-     * Tries to create the directory if it does not yet exist. Server ID must
-     * not be {@code null}.
+     * The digest and size are set in the file metadata. If a storage codec is
+     * configured and the file is not in an already compressed format, the
+     * content is compressed into a new staging file, which replaces the
+     * original one if it is smaller. The resulting file is moved into the blob
+     * store, or discarded if the blob store already contains the same content.
      *
-     * @param server the server that the upload path belongs to
-     * @return the path where all files of given server are stored
-     * @throws IOException if there is a problem accessing or creating the
-     * directory, or if the path is not a directory
-     */
-    public Path getServerUploadPath(Server server) throws IOException {
-        Path basePath = Paths.get(fileStorageRoot).toAbsolutePath();
-        Path uploadPath = basePath.resolve(server.getId().toString());
-        if (!Files.exists(uploadPath)) {
-            try {
-                return Files.createDirectories(uploadPath);
-            } catch (IOException e) {
-                throw new IOException("File Storage Path does not exist and could not be created: " + uploadPath.toString(), e);
+     * @param file the prepared file metadata
+     * @param stagingPath the path of the staged content
+     * @param digest the digest computed over the staged content
+     * @return the path to where the file was stored
+     * @throws IOException if there was an I/O error while storing the file
+     */
+    private Path storeStagedFile(File file, Path stagingPath, MessageDigest digest) throws IOException {
+        final long size = Files.size(stagingPath);
+        file.setDigest(HexFormat.of().formatHex(digest.digest()));
+        file.setSize(size);
+        file.setEncoding(null);
+        file.setStoredSize(size);
+
+        if (storageCodec == StorageCodec.NONE || isCompressedFormat(file.getName())) {
+            return blobStore.store(stagingPath, getBlobName(file), referenceCount(file));
+        }
+
+        final Path encodedPath = blobStore.createStagingFile();
+        try {
+            try (InputStream in = Files.newInputStream(stagingPath);
+                    OutputStream out = storageCodec.encode(Files.newOutputStream(encodedPath))) {
+                in.transferTo(out);
             }
+            final long storedSize = Files.size(encodedPath);
+            if (storedSize >= size) {
+                return blobStore.store(stagingPath, getBlobName(file), referenceCount(file));
+            }
+
+            log.debug("Compressed file {} from {} to {} bytes", file.getName(), size, storedSize);
+            file.setEncoding(storageCodec.getContentEncoding());
+            file.setStoredSize(storedSize);
+            final Path blobPath = blobStore.store(encodedPath, getBlobName(file), referenceCount(file));
+            Files.delete(stagingPath);
+            return blobPath;
+        } finally {
+            Files.deleteIfExists(encodedPath);
         }
-        if (!Files.isDirectory(uploadPath, NOFOLLOW_LINKS)) {
-            throw new IOException("File Storage Path is not a directory!");
+    }
+
+    /**
+     * Returns the name of the blob containing the stored content of given
+     * file.
+     * <p>
+     * The name consists of the digest and an extension denoting the codec.
+     *
+     * @param file the file with digest
+     * @return the blob name
+     */
+    private static String getBlobName(File file) {
+        return file.getDigest() + StorageCodec.forContentEncoding(file.getEncoding()).getExtension();
+    }
+
+    /**
+     * Returns a supplier counting the files that reference the same blob as
+     * the given file.
+     *
+     * @param file the file with digest
+     * @return the reference count supplier
+     */
+    private LongSupplier referenceCount(File file) {
+        final String digest = file.getDigest();
+        final String encoding = file.getEncoding();
+        return () -> fileRepo.countByDigestAndEncoding(digest, encoding);
+    }
+
+    /**
+     * Computes the SHA-256 digest of the file at given path.
+     *
+     * @param path the path of the file
+     * @return the digest computed over the file content
+     * @throws IOException if the file cannot be read
+     */
+    private static MessageDigest digest(Path path) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
         }
-        return uploadPath;
+        return digest;
     }
 
     /**
-     * Generates the file system path for the given file.
+     * Creates a new instance of the digest algorithm used to identify file
+     * contents.
+     *
+     * @return a new SHA-256 message digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported!", e);
+        }
+    }
+
+    /**
+     * Retrieves the content of the given file from the in-memory cache.
      * <p>
-     * Gets the server path and appends the file name. File name and server must
-     * not be {@code null}.
+     * The content is read from the file system and cached if it is not yet
+     * present.
+     *
+     * @param file the file to retrieve the content for
+     * @return a read-only buffer containing the content, or {@code null} if
+     * the file is too large to be cached or caching is disabled
+     * @throws IOException if the file cannot be read
+     * @see FileContentCache
+     */
+    public ByteBuffer getCachedContent(File file) throws IOException {
+        return contentCache.get(getPath(file), getStoredSize(file));
+    }
+
+    /**
+     * Opens a stream to read the content of given file.
+     * <p>
+     * The content is decompressed if it is stored compressed. Cached contents
+     * are read from memory.
+     *
+     * @param file the file to read
+     * @return a stream providing the uncompressed content
+     * @throws IOException if the file cannot be read
+     */
+    public InputStream openContent(File file) throws IOException {
+        final ByteBuffer content = getCachedContent(file);
+        final InputStream in = content != null ? new ByteBufferInputStream(content) : Files.newInputStream(getPath(file));
+        try {
+            return StorageCodec.forContentEncoding(file.getEncoding()).decode(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the stored content of given file.
+     *
+     * @param file the file
+     * @return the number of bytes stored
+     */
+    public static long getStoredSize(File file) {
+        return file.getStoredSize() != null ? file.getStoredSize() : file.getSize();
+    }
+
+    /**
+     * Checks if the file name indicates an already compressed format.
+     *
+     * @param fileName the file name
+     * @return {@code true} if the file is already compressed, else
+     * {@code false}
+     */
+    public static boolean isCompressedFormat(String fileName) {
+        return fileName != null && COMPRESSED_EXTENSIONS.contains(getFileExtension(fileName).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Generates the file system path for the content of the given file.
+     * <p>
+     * The content is located in the blob store and might be compressed. Files
+     * without digest were stored before the blob store was introduced and are
+     * located in the directory of their server.
      *
      * @param file the file to which the path should be assembled
      * @return file system path for the given file
-     * @throws IOException if one is thrown by
-     * {@link #getServerUploadPath(Server)}
-     * @see #getServerUploadPath(Server)
+     * @throws IOException if the storage directory cannot be accessed
+     * @see BlobStore#getPath(String)
      */
     public Path getPath(File file) throws IOException {
+        if (file.getDigest() != null) {
+            return blobStore.getPath(getBlobName(file));
+        }
+        return getLegacyPath(file);
+    }
+
+    /**
+     * Generates the file system path of the directory where all files of a
+     * specific server were stored before the blob store was introduced.
+     * <p>
+     * Server ID must not be {@code null}.
+     *
+     * @param server the server that the upload path belongs to
+     * @return the path where the legacy files of given server are stored
+     */
+    private Path getLegacyServerPath(Server server) {
+        return Paths.get(fileStorageRoot).toAbsolutePath().resolve(server.getId().toString());
+    }
+
+    /**
+     * Generates the file system path for the given file as it was used before
+     * the blob store was introduced.
+     * <p>
+     * Gets the server path and appends the file name. File name and server must
+     * not be {@code null}.
+     *
+     * @param file the file to which the path should be assembled
+     * @return legacy file system path for the given file
+     * @see #getLegacyServerPath(Server)
+     */
+    private Path getLegacyPath(File file) {
         String fileName = file.getName();
         if (fileName == null || fileName.isEmpty()) {
             throw new RuntimeException("File name must not be empty!");
         }
-        return getServerUploadPath(file.getServer()).resolve(fileName);
+        return getLegacyServerPath(file.getServer()).resolve(fileName);
     }
 
     /**
@@ -281,4 +791,46 @@ public class FileService {
         return (idx != -1) ? fileName.substring(idx + 1) : "";
     }
 
+    /**
+     * Input stream reading from a byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        /**
+         * The buffer to read from.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates a stream reading the remaining bytes of given buffer.
+         *
+         * @param buffer the buffer to read from; its position is not changed
+         */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
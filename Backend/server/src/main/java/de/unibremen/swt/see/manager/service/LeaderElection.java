@@ -0,0 +1,162 @@
+package de.unibremen.swt.see.manager.service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Elects one instance of the back-end as leader among all instances using the
+ * same database.
+ * <p>
+ * Scheduled tasks that should only run once across all replicas check
+ * {@link #isLeader()} before they run. The leader holds a lease that it
+ * renews on every heartbeat; if it stops, e.g., because it crashed, another
+ * instance takes over after the lease has expired.
+ * <p>
+ * The leadership is considered lost locally as soon as the lease would have
+ * expired since the last successful renewal, even if the database is not
+ * reachable, so that two instances never consider themselves leader at the
+ * same time as long as their clocks run at the same rate.
+ * <p>
+ * Whenever this instance becomes leader, an {@link Elected} event is
+ * published, so that work skipped while another instance was leader can be
+ * caught up on.
+ * <p>
+ * If cluster coordination is disabled, this instance is always the leader.
+ *
+ * @see LeaseService
+ */
+@Service
+@Slf4j
+public class LeaderElection {
+
+    /**
+     * Name of the lease held by the leader.
+     */
+    static final String LEASE_NAME = "leader";
+
+    /**
+     * Published when this instance becomes leader.
+     *
+     * @param instanceId the ID of this instance
+     */
+    public record Elected(String instanceId) {}
+
+    /**
+     * Acquires and renews the lease.
+     */
+    private final LeaseService leaseService;
+
+    /**
+     * Publishes the {@link Elected} events.
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Time after which the lease expires unless renewed.
+     */
+    private final Duration ttl;
+
+    /**
+     * The fencing token of the held lease, or {@code null} if this instance
+     * is not the leader.
+     */
+    private volatile Long token;
+
+    /**
+     * The value of {@link System#nanoTime()} at which the held lease expires.
+     */
+    private volatile long validUntil;
+
+    /**
+     * Creates the leader election without publishing events.
+     *
+     * @param leaseService the lease service
+     * @param ttlMs the time in milliseconds after which the leadership is lost
+     * unless renewed
+     */
+    public LeaderElection(LeaseService leaseService, long ttlMs) {
+        this(leaseService, event -> {}, ttlMs);
+    }
+
+    /**
+     * Creates the leader election.
+     *
+     * @param leaseService the lease service
+     * @param eventPublisher publishes an {@link Elected} event whenever this
+     * instance becomes leader
+     * @param ttlMs the time in milliseconds after which the leadership is lost
+     * unless renewed
+     */
+    @Autowired
+    public LeaderElection(
+            LeaseService leaseService,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${see.app.cluster.leader.ttl-ms}") long ttlMs) {
+        this.leaseService = leaseService;
+        this.eventPublisher = eventPublisher;
+        this.ttl = Duration.ofMillis(ttlMs);
+    }
+
+    /**
+     * Checks whether this instance is the leader.
+     *
+     * @return {@code true} if this instance is the leader
+     */
+    public boolean isLeader() {
+        if (!leaseService.isEnabled()) {
+            return true;
+        }
+        return token != null && System.nanoTime() - validUntil < 0;
+    }
+
+    /**
+     * Acquires the leadership if it is vacant, or renews it if this instance
+     * is the leader.
+     * <p>
+     * The heartbeat interval needs to be considerably shorter than the time
+     * to live of the lease.
+     */
+    @Scheduled(fixedRateString = "${see.app.cluster.leader.heartbeat-ms}")
+    public synchronized void heartbeat() {
+        if (!leaseService.isEnabled()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final Long current = token;
+        if (current != null) {
+            if (leaseService.renew(LEASE_NAME, current, ttl)) {
+                validUntil = start + ttl.toNanos();
+                return;
+            }
+            token = null;
+            log.warn("Instance {} lost the leadership", leaseService.getInstanceId());
+        }
+        final Long acquired = leaseService.tryAcquire(LEASE_NAME, ttl);
+        if (acquired != null) {
+            validUntil = start + ttl.toNanos();
+            token = acquired;
+            log.info("Instance {} has been elected as leader", leaseService.getInstanceId());
+            eventPublisher.publishEvent(new Elected(leaseService.getInstanceId()));
+        }
+    }
+
+    /**
+     * Releases the leadership, so that another instance can take over
+     * without waiting for the lease to expire.
+     */
+    @PreDestroy
+    public synchronized void resign() {
+        final Long current = token;
+        if (current != null) {
+            token = null;
+            leaseService.release(LEASE_NAME, current);
+            log.info("Instance {} resigned the leadership", leaseService.getInstanceId());
+        }
+    }
+}
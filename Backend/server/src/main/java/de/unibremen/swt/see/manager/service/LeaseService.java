@@ -0,0 +1,186 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.model.Lease;
+import de.unibremen.swt.see.manager.repository.LeaseRepository;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Acquires, renews, and releases leases shared by all instances of the
+ * back-end using the same database.
+ * <p>
+ * Leases coordinate multiple replicas of the back-end: they synchronize
+ * operations on the same server across instances and elect the instance that
+ * runs scheduled tasks. On a single instance, cluster coordination can be
+ * disabled, in which case {@link #isEnabled()} returns {@code false} and
+ * leases are not used at all.
+ * <p>
+ * Each operation runs in its own short transaction, independent of the
+ * transaction of the caller, so that other instances see acquired leases
+ * immediately. Expiration times are based on the clocks of the instances,
+ * which need to be roughly synchronized. Failing attempts to acquire a lease,
+ * e.g., because the database is busy, are treated like a held lease. Renewals
+ * and releases are retried a few times, since a lease that cannot be released
+ * blocks other holders until it expires.
+ *
+ * @see Lease
+ */
+@Service
+@Slf4j
+public class LeaseService {
+
+    /**
+     * Number of attempts to renew or release a lease.
+     */
+    private static final int ATTEMPTS = 5;
+
+    /**
+     * Initial delay in milliseconds between attempts to renew or release a
+     * lease.
+     */
+    private static final long RETRY_DELAY_MS = 10;
+
+    /**
+     * Persists leases.
+     */
+    private final LeaseRepository leaseRepo;
+
+    /**
+     * Runs each lease operation in a new transaction.
+     */
+    private final TransactionTemplate transaction;
+
+    /**
+     * Whether cluster coordination is enabled.
+     */
+    @Getter
+    private final boolean enabled;
+
+    /**
+     * ID of this instance, stored as owner of acquired leases.
+     */
+    @Getter
+    private final String instanceId;
+
+    /**
+     * Creates the service.
+     *
+     * @param leaseRepo the lease repository
+     * @param transactionManager the transaction manager
+     * @param enabled whether cluster coordination is enabled
+     * @param instanceId the ID of this instance; a random ID is used if blank
+     */
+    public LeaseService(
+            LeaseRepository leaseRepo,
+            PlatformTransactionManager transactionManager,
+            @Value("${see.app.cluster.enabled}") boolean enabled,
+            @Value("${see.app.cluster.instance-id}") String instanceId) {
+        this.leaseRepo = leaseRepo;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.instanceId = instanceId == null || instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+        if (enabled) {
+            log.info("Cluster coordination is enabled for instance {}", this.instanceId);
+        }
+    }
+
+    /**
+     * Acquires a lease unless it is held by another holder.
+     * <p>
+     * The lease is not reentrant: it cannot be acquired again before it
+     * expires or is released, even by this instance.
+     *
+     * @param name the name of the lease
+     * @param ttl the time after which the lease expires unless renewed
+     * @return the fencing token of the acquired lease, or {@code null} if the
+     * lease is held
+     */
+    public Long tryAcquire(String name, Duration ttl) {
+        try {
+            return transaction.execute(status -> {
+                final long now = System.currentTimeMillis();
+                final long expiresAt = now + ttl.toMillis();
+                if (leaseRepo.acquire(name, instanceId, now, expiresAt) == 0) {
+                    return null;
+                }
+                return leaseRepo.findById(name).map(Lease::getToken).orElse(null);
+            });
+        } catch (DataAccessException e) {
+            // The database is busy, e.g., another instance is modifying leases
+            log.debug("Failed to acquire lease {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Extends a held lease.
+     *
+     * @param name the name of the lease
+     * @param token the fencing token of the held lease
+     * @param ttl the time from now after which the lease expires unless
+     * renewed again
+     * @return {@code true} if the lease has been extended, or {@code false}
+     * if it has been lost
+     */
+    public boolean renew(String name, long token, Duration ttl) {
+        final Integer renewed = retry("renew", name, () -> transaction.execute(status -> {
+            final long now = System.currentTimeMillis();
+            return leaseRepo.renew(name, token, now, now + ttl.toMillis());
+        }));
+        return renewed != null && renewed == 1;
+    }
+
+    /**
+     * Releases a held lease, so that it can be acquired again immediately.
+     * <p>
+     * Nothing happens if the lease has already been acquired by another
+     * holder. If the lease cannot be released, it is released when it
+     * expires.
+     *
+     * @param name the name of the lease
+     * @param token the fencing token of the held lease
+     */
+    public void release(String name, long token) {
+        retry("release", name, () -> transaction.execute(status -> leaseRepo.release(name, token)));
+    }
+
+    /**
+     * Runs a lease operation, retrying it with increasing delays if it fails.
+     *
+     * @param operation the name of the operation used for logging
+     * @param name the name of the lease
+     * @param action the operation
+     * @return the result of the operation, or {@code null} if all attempts
+     * failed or the thread has been interrupted
+     */
+    private Integer retry(String operation, String name, Supplier<Integer> action) {
+        long delayMs = RETRY_DELAY_MS;
+        for (int attempt = 1;; attempt++) {
+            try {
+                return action.get();
+            } catch (DataAccessException e) {
+                if (attempt == ATTEMPTS) {
+                    log.warn("Failed to {} lease {}: {}", operation, name, e.getMessage());
+                    return null;
+                }
+            }
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            delayMs *= 2;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.repository.UserRepository;
+import de.unibremen.swt.see.manager.security.PasswordHashingRejectedException;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
+import de.unibremen.swt.see.manager.security.UserDetailsImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Upgrades outdated password hashes after successful sign-ins.
+ * <p>
+ * Each encoded password records its algorithm as prefix (e.g.,
+ * {@code {bcrypt}}) and the parameters of the algorithm (e.g., the BCrypt
+ * strength). If these differ from the current configuration, the password is
+ * hashed again with the raw password provided during sign-in. This happens in
+ * the background, so that the sign-in does not take twice as long.
+ * <p>
+ * Machine credentials (see {@link Sha256PasswordEncoder}) are never upgraded,
+ * as they are deliberately not hashed with BCrypt. Server accounts, whose
+ * username is the ID of their server, that were created before machine
+ * credentials were introduced still have a BCrypt hash. Their password is
+ * hashed again as machine credential on their next sign-in.
+ * <p>
+ * The number of upgraded hashes is published as
+ * {@code password.hashing.upgraded} metric.
+ */
+@Service
+@Slf4j
+public class PasswordUpgradeService {
+
+    /**
+     * Prefix of machine credentials, which are not upgraded.
+     */
+    private static final String MACHINE_CREDENTIAL_PREFIX = "{" + Sha256PasswordEncoder.ID + "}";
+
+    /**
+     * Used to check and hash passwords.
+     */
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * Hashes the passwords of server accounts.
+     */
+    private final PasswordEncoder machineCredentialEncoder = new Sha256PasswordEncoder();
+
+    /**
+     * Used to store the upgraded password hashes.
+     */
+    private final UserRepository userRepo;
+
+    /**
+     * Used to recognize server accounts.
+     */
+    private final ServerRepository serverRepo;
+
+    /**
+     * Contains the user details with the outdated hash.
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Counts the upgraded password hashes.
+     */
+    private final Counter upgradedCounter;
+
+    /**
+     * Runs the upgrades; hashing itself is limited by the password encoder.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * IDs of users whose password hash is currently being upgraded.
+     */
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates the service.
+     *
+     * @param passwordEncoder the password encoder of the application
+     * @param userRepo the user repository
+     * @param serverRepo the server repository
+     * @param userDetailsCache the user details cache
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    public PasswordUpgradeService(PasswordEncoder passwordEncoder, UserRepository userRepo,
+            ServerRepository serverRepo, UserDetailsCache userDetailsCache, MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.userRepo = userRepo;
+        this.serverRepo = serverRepo;
+        this.userDetailsCache = userDetailsCache;
+        this.upgradedCounter = Counter.builder("password.hashing.upgraded")
+                .description("Number of password hashes upgraded after sign-in")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Upgrades the password hash of the given user in the background if it is
+     * outdated.
+     * <p>
+     * The raw password must have been verified against the hash of the given
+     * user details before. If the password of the user changes in the
+     * meantime, the upgrade is discarded.
+     * <p>
+     * The password of a server account is hashed as machine credential.
+     *
+     * @param userDetails the details of the user that has just signed in
+     * @param rawPassword the raw password provided during sign-in
+     */
+    public void upgradeIfOutdated(UserDetailsImpl userDetails, String rawPassword) {
+        final String encodedPassword = userDetails.getPassword();
+        if (encodedPassword == null || encodedPassword.startsWith(MACHINE_CREDENTIAL_PREFIX)) {
+            return;
+        }
+        final boolean serverAccount = isServerAccount(userDetails.getUsername());
+        if (!serverAccount && !passwordEncoder.upgradeEncoding(encodedPassword)
+                || !pending.add(userDetails.getId())) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                upgrade(userDetails, encodedPassword, rawPassword, serverAccount);
+            } finally {
+                pending.remove(userDetails.getId());
+            }
+        });
+    }
+
+    /**
+     * Checks if the user with given username is the account of a server.
+     * <p>
+     * Server accounts are named after the ID of their server.
+     *
+     * @param username the username
+     * @return {@code true} if a server with the username as ID exists
+     */
+    private boolean isServerAccount(String username) {
+        final UUID serverId;
+        try {
+            serverId = UUID.fromString(username);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return serverRepo.existsById(serverId);
+    }
+
+    /**
+     * Hashes the password again and stores the new hash.
+     *
+     * @param userDetails the details of the user
+     * @param encodedPassword the outdated password hash
+     * @param rawPassword the raw password
+     * @param serverAccount whether the password should be hashed as machine
+     * credential
+     */
+    private void upgrade(UserDetailsImpl userDetails, String encodedPassword, String rawPassword,
+            boolean serverAccount) {
+        try {
+            final String upgradedPassword = serverAccount
+                    ? MACHINE_CREDENTIAL_PREFIX + machineCredentialEncoder.encode(rawPassword)
+                    : passwordEncoder.encode(rawPassword);
+            if (userRepo.replacePassword(userDetails.getId(), encodedPassword, upgradedPassword) == 0) {
+                log.debug("Password of user {} changed during hash upgrade", userDetails.getUsername());
+                return;
+            }
+            userDetailsCache.invalidate(userDetails.getUsername());
+            upgradedCounter.increment();
+            log.info("Upgraded password hash of user {}", userDetails.getUsername());
+        } catch (PasswordHashingRejectedException e) {
+            log.debug("Postponed password hash upgrade of user {}: {}", userDetails.getUsername(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Unable to upgrade password hash of user {}", userDetails.getUsername(), e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.model.RefreshToken;
+import de.unibremen.swt.see.manager.model.User;
+import de.unibremen.swt.see.manager.repository.RefreshTokenRepository;
+import de.unibremen.swt.see.manager.repository.UserRepository;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
+import jakarta.persistence.EntityNotFoundException;
+import java.security.SecureRandom;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Issues and rotates refresh tokens.
+ * <p>
+ * Access tokens are short-lived. Instead of signing in again with their
+ * password, which requires an expensive BCrypt verification, clients exchange
+ * a refresh token for a new access token. The refresh token is replaced by a
+ * new one with each exchange, and the expiration time is extended, resulting
+ * in a sliding session.
+ * <p>
+ * Refresh tokens are random values; only their SHA-256 hash is stored. If a
+ * token is used a second time, it has probably been stolen. In this case, all
+ * tokens issued since the sign-in are revoked, so that both the attacker and
+ * the legitimate client need to sign in again.
+ * <p>
+ * As an exception, the most recently used token of a family may be used again
+ * within a short grace period. This happens if a client sends concurrent
+ * requests with the same token, e.g., from multiple browser tabs, and the
+ * responses of all but one request are lost. Each of these requests receives
+ * a new token of the same family.
+ *
+ * @see RefreshToken
+ */
+@Service
+@Transactional
+@Slf4j
+public class RefreshTokenService {
+
+    /**
+     * Number of random bytes of a refresh token.
+     */
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * Persists refresh tokens.
+     */
+    private final RefreshTokenRepository refreshTokenRepo;
+
+    /**
+     * Used to reference the owners of refresh tokens.
+     */
+    private final UserRepository userRepo;
+
+    /**
+     * Time in milliseconds after which an unused refresh token expires.
+     */
+    private final long refreshExpirationMs;
+
+    /**
+     * Time in milliseconds during which the most recently used token of a
+     * family may be used again.
+     */
+    private final long reuseGracePeriodMs;
+
+    /**
+     * Hashes refresh tokens.
+     */
+    private final Sha256PasswordEncoder tokenHasher = new Sha256PasswordEncoder();
+
+    /**
+     * Generates refresh tokens.
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Result of a successful token rotation.
+     *
+     * @param user the user the token has been issued to
+     * @param token the new refresh token
+     */
+    public record Rotation(User user, String token) {
+    }
+
+    /**
+     * Creates the service.
+     *
+     * @param refreshTokenRepo the refresh token repository
+     * @param userRepo the user repository
+     * @param refreshExpirationMs the time in milliseconds after which an
+     * unused refresh token expires
+     * @param reuseGracePeriodMs the time in milliseconds during which the most
+     * recently used token of a family may be used again; {@code 0} disables
+     * the grace period
+     */
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepo, UserRepository userRepo,
+            @Value("${see.app.jwtRefreshExpirationMs}") long refreshExpirationMs,
+            @Value("${see.app.jwtRefreshGracePeriodMs}") long reuseGracePeriodMs) {
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.userRepo = userRepo;
+        this.refreshExpirationMs = refreshExpirationMs;
+        this.reuseGracePeriodMs = reuseGracePeriodMs;
+    }
+
+    /**
+     * Issues a refresh token for a user that has just signed in.
+     *
+     * @param userId the ID of the user
+     * @return the refresh token
+     * @throws EntityNotFoundException if the user does not exist
+     */
+    public String issue(UUID userId) throws EntityNotFoundException {
+        final User user = userRepo.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found: " + userId));
+        return save(user, UUID.randomUUID());
+    }
+
+    /**
+     * Exchanges a refresh token for a new one.
+     * <p>
+     * If the token has already been used, all tokens of its family are
+     * revoked, unless it is the most recently used token of its family and
+     * has been used within the grace period.
+     *
+     * @param token the refresh token
+     * @return the user and the new refresh token, or {@code null} if the token
+     * is unknown, expired, or has already been used
+     */
+    public Rotation rotate(String token) {
+        final RefreshToken refreshToken = refreshTokenRepo.findByTokenHash(hash(token)).orElse(null);
+        if (refreshToken == null) {
+            return null;
+        }
+        final ZonedDateTime now = ZonedDateTime.now();
+        if (refreshToken.getExpirationTime().isBefore(now)) {
+            refreshTokenRepo.delete(refreshToken);
+            return null;
+        }
+        final User user = refreshToken.getUser();
+        if (refreshTokenRepo.markUsed(refreshToken.getId(), now) == 0) {
+            if (isWithinGracePeriod(refreshToken, now)) {
+                log.debug("Refresh token of user {} has been reused within the grace period", user.getUsername());
+                return new Rotation(user, save(user, refreshToken.getFamily()));
+            }
+            log.warn("Refresh token of user {} has been reused; revoking all tokens of its family",
+                    user.getUsername());
+            refreshTokenRepo.deleteByFamily(refreshToken.getFamily());
+            return null;
+        }
+        return new Rotation(user, save(user, refreshToken.getFamily()));
+    }
+
+    /**
+     * Checks if a used token may be used again.
+     * <p>
+     * This is the case if it has been used within the grace period and no
+     * other token of its family has been used since then.
+     *
+     * @param refreshToken the used token
+     * @param now the current time
+     * @return {@code true} if the token may be used again, else {@code false}
+     */
+    private boolean isWithinGracePeriod(RefreshToken refreshToken, ZonedDateTime now) {
+        if (reuseGracePeriodMs <= 0) {
+            return false;
+        }
+        final ZonedDateTime usedTime = refreshTokenRepo.findUsedTimeById(refreshToken.getId()).orElse(null);
+        return usedTime != null
+                && usedTime.plus(reuseGracePeriodMs, ChronoUnit.MILLIS).isAfter(now)
+                && !refreshTokenRepo.existsByFamilyAndUsedTimeAfter(refreshToken.getFamily(), usedTime);
+    }
+
+    /**
+     * Revokes a refresh token along with all tokens of its family, e.g., on
+     * sign-out.
+     *
+     * @param token the refresh token
+     */
+    public void revoke(String token) {
+        refreshTokenRepo.findByTokenHash(hash(token))
+                .ifPresent(refreshToken -> refreshTokenRepo.deleteByFamily(refreshToken.getFamily()));
+    }
+
+    /**
+     * Revokes all refresh tokens of a user, e.g., after the password has been
+     * changed.
+     *
+     * @param userId the ID of the user
+     */
+    public void revokeAll(UUID userId) {
+        refreshTokenRepo.deleteByUserId(userId);
+    }
+
+    /**
+     * Deletes expired refresh tokens on a fixed interval.
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void deleteExpired() {
+        final int deleted = refreshTokenRepo.deleteExpired(ZonedDateTime.now());
+        if (deleted > 0) {
+            log.info("Deleted {} expired refresh tokens", deleted);
+        }
+    }
+
+    /**
+     * Creates and stores a new refresh token.
+     *
+     * @param user the user the token is issued to
+     * @param family the family of the token
+     * @return the refresh token
+     */
+    private String save(User user, UUID family) {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        final String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        final RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setFamily(family);
+        refreshToken.setUser(user);
+        refreshToken.setExpirationTime(ZonedDateTime.now().plus(refreshExpirationMs, ChronoUnit.MILLIS));
+        refreshTokenRepo.save(refreshToken);
+        return token;
+    }
+
+    /**
+     * Computes the stored hash of a refresh token.
+     *
+     * @param token the refresh token
+     * @return the hash
+     */
+    private String hash(String token) {
+        return tokenHasher.encode(token);
+    }
+}
@@ -0,0 +1,123 @@
+package de.unibremen.swt.see.manager.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Memoizes entity lookups for the duration of an HTTP request.
+ * <p>
+ * The same entity is often looked up several times while handling a single
+ * request, e.g., once during access control and once by the controller. The
+ * services consult this cache, so that each entity is loaded only once per
+ * request, independent of whether the persistence context spans the whole
+ * request.
+ * <p>
+ * Lookups that do not find an entity are memoized as well. Within read-write
+ * transactions, memoized entities that are not managed by the persistence
+ * context are loaded again, so that changes to them are persisted. Outside of HTTP
+ * requests, e.g., in scheduled tasks, nothing is cached.
+ *
+ * @see FileService#get(UUID)
+ * @see ServerService#get(UUID)
+ * @see UserService#get(UUID)
+ */
+@Component
+public class RequestEntityCache {
+
+    /**
+     * Name of the request attribute that holds the memoized entities.
+     */
+    private static final String ATTRIBUTE = RequestEntityCache.class.getName();
+
+    /**
+     * Identifies a memoized entity.
+     *
+     * @param type the entity type
+     * @param id the ID of the entity
+     */
+    private record Key(Class<?> type, UUID id) {
+    }
+
+    /**
+     * Used to check if memoized entities are managed.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Returns the entity of given type with given ID.
+     * <p>
+     * The entity is loaded and memoized if it has not been looked up during
+     * the current request yet.
+     *
+     * @param <T> the entity type
+     * @param type the entity type
+     * @param id the ID of the entity
+     * @param loader loads the entity by its ID, returning {@code null} if it
+     * does not exist
+     * @return the entity, or {@code null} if it does not exist
+     */
+    public <T> T get(Class<T> type, UUID id, Function<UUID, T> loader) {
+        final Map<Key, Object> entities = getEntities(true);
+        if (entities == null || id == null) {
+            return loader.apply(id);
+        }
+        final Key key = new Key(type, id);
+        if (entities.containsKey(key)) {
+            final T entity = type.cast(entities.get(key));
+            if (entity == null || !TransactionSynchronizationManager.isActualTransactionActive()
+                    || TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                    || entityManager.contains(entity)) {
+                return entity;
+            }
+        }
+        final T entity = loader.apply(id);
+        entities.put(key, entity);
+        return entity;
+    }
+
+    /**
+     * Removes the entity of given type with given ID from the cache of the
+     * current request.
+     *
+     * @param type the entity type
+     * @param id the ID of the entity
+     */
+    public void invalidate(Class<?> type, UUID id) {
+        final Map<Key, Object> entities = getEntities(false);
+        if (entities != null) {
+            entities.remove(new Key(type, id));
+        }
+    }
+
+    /**
+     * Returns the memoized entities of the current request.
+     *
+     * @param create whether to create the map if it does not exist yet
+     * @return the memoized entities, or {@code null} if there is no current
+     * request or no entities have been memoized and {@code create} is
+     * {@code false}
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Key, Object> getEntities(boolean create) {
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<Key, Object> entities = (Map<Key, Object>) attributes.getAttribute(ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (entities == null && create) {
+            entities = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entities;
+    }
+}
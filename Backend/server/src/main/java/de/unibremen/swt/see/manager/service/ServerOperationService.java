@@ -0,0 +1,217 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.model.ServerOperation;
+import de.unibremen.swt.see.manager.repository.ServerOperationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Executes start, stop, and delete operations on servers asynchronously.
+ * <p>
+ * These operations wait for the server lock and for several Docker calls,
+ * which can take many seconds. Instead of blocking the HTTP request thread,
+ * operations are queued and executed on virtual threads, and clients poll
+ * their progress using the operation ID.
+ * <p>
+ * Operations are stored in the database, so that their progress can be polled
+ * from any instance, and are removed after a configurable period once they
+ * have completed. Operations that never complete, e.g., because the executing
+ * instance stopped, are marked as failed after the same period, so that
+ * clients still polling them learn about the failure. The duration of completed operations is
+ * published as {@code server.operation} metric, tagged with the {@code type}
+ * and the {@code status} of the operation.
+ *
+ * @see ServerOperation
+ */
+@Service
+@Slf4j
+public class ServerOperationService {
+
+    /**
+     * The reason set on operations that never completed.
+     */
+    static final String ABANDONED_MESSAGE = "The operation was not completed in time";
+
+    /**
+     * Executes the operations.
+     */
+    private final ServerService serverService;
+
+    /**
+     * Used to record the duration of operations.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Runs the operations; each operation waits on its server lock, so no
+     * further limit is needed.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Stores the operations.
+     */
+    private final ServerOperationRepository operationRepo;
+
+    /**
+     * Time in milliseconds after which completed operations are removed.
+     */
+    private final long retentionMs;
+
+    /**
+     * Creates the service.
+     *
+     * @param serverService the server service
+     * @param operationRepo the repository to store the operations in
+     * @param meterRegistry the registry to publish the metrics to
+     * @param retentionMs the time in milliseconds after which completed
+     * operations are removed
+     */
+    public ServerOperationService(
+            ServerService serverService,
+            ServerOperationRepository operationRepo,
+            MeterRegistry meterRegistry,
+            @Value("${see.app.serveroperation.retention-ms}") long retentionMs) {
+        this.serverService = serverService;
+        this.operationRepo = operationRepo;
+        this.meterRegistry = meterRegistry;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Queues an operation on a server.
+     *
+     * @param serverId the ID of the server
+     * @param type the kind of the operation
+     * @return the queued operation
+     * @throws EntityNotFoundException if the server does not exist
+     */
+    public ServerOperation submit(UUID serverId, ServerOperation.Type type) throws EntityNotFoundException {
+        if (serverService.get(serverId) == null) {
+            throw new EntityNotFoundException("No server found with ID " + serverId);
+        }
+        final ServerOperation operation = operationRepo.save(new ServerOperation(serverId, type));
+        log.debug("Queued operation {} on server {}: {}", operation.getId(), serverId, type);
+        executor.execute(() -> run(operation));
+        return operation;
+    }
+
+    /**
+     * Retrieves an operation by its ID.
+     *
+     * @param id the ID of the operation
+     * @return the operation
+     * @throws EntityNotFoundException if the operation does not exist or has
+     * been removed
+     */
+    public ServerOperation get(UUID id) throws EntityNotFoundException {
+        return operationRepo.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("No operation found with ID " + id));
+    }
+
+    /**
+     * Marks abandoned operations as failed and removes expired operations on a
+     * fixed interval.
+     */
+    @Scheduled(initialDelay = 60000, fixedRate = 60000)
+    @Transactional
+    public void expireOperations() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
+        final ZonedDateTime threshold = now.minus(retentionMs, ChronoUnit.MILLIS);
+        final int failed = operationRepo.failAbandoned(threshold, now, ABANDONED_MESSAGE);
+        if (failed > 0) {
+            log.warn("Marked {} abandoned server operations as failed", failed);
+        }
+        final int deleted = operationRepo.deleteExpired(threshold);
+        if (deleted > 0) {
+            log.debug("Removed {} expired server operations", deleted);
+        }
+    }
+
+    /**
+     * Stops accepting operations and waits briefly for running ones, so that
+     * they are not interrupted in the middle of Docker calls.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Server operations still running during shutdown");
+        }
+    }
+
+    /**
+     * Executes an operation and records its outcome.
+     *
+     * @param operation the operation to execute
+     */
+    private void run(ServerOperation operation) {
+        operation.running();
+        save(operation);
+        final long start = System.nanoTime();
+        String failure = null;
+        try {
+            switch (operation.getType()) {
+                case START -> serverService.start(operation.getServerId());
+                case STOP -> serverService.stop(operation.getServerId());
+                case DELETE -> serverService.delete(operation.getServerId());
+            }
+        } catch (EntityNotFoundException e) {
+            failure = "The server does not exist!";
+        } catch (IllegalStateException e) {
+            failure = e.getMessage();
+        } catch (IOException e) {
+            log.error("Operation {} on server {} failed: ", operation.getId(), operation.getServerId(), e);
+            failure = operation.getType() == ServerOperation.Type.DELETE
+                    ? "Error during file deletion!"
+                    : "Error accessing server files!";
+        } catch (RuntimeException e) {
+            log.error("Operation {} on server {} failed: ", operation.getId(), operation.getServerId(), e);
+            failure = "Internal server error!";
+        }
+        operation.finish(failure);
+        save(operation);
+        Timer.builder("server.operation")
+                .description("Duration of asynchronous server operations")
+                .tag("type", operation.getType().name().toLowerCase(Locale.ROOT))
+                .tag("status", operation.getStatus().name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Operation {} on server {} {}", operation.getId(), operation.getServerId(),
+                operation.getStatus().name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Stores the progress of an operation.
+     * <p>
+     * Failures are only logged, so that they do not prevent the operation from
+     * being executed.
+     *
+     * @param operation the operation
+     */
+    private void save(ServerOperation operation) {
+        try {
+            operationRepo.save(operation);
+        } catch (RuntimeException e) {
+            log.error("Unable to store progress of operation {}: ", operation.getId(), e);
+        }
+    }
+}
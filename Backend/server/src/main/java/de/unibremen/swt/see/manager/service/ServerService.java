@@ -15,12 +15,13 @@ import de.unibremen.swt.see.manager.repository.ServerRepository;
 import de.unibremen.swt.see.manager.util.ServerLockManager;
 import jakarta.persistence.EntityNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.SecureRandom;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -78,6 +79,26 @@ public class ServerService {
      */
     private final UserService userService;
 
+    /**
+     * Memoizes servers looked up during a request.
+     */
+    private final RequestEntityCache requestCache;
+
+    /**
+     * The lock manager for concurrent writes.
+     */
+    private final ServerLockManager lockManager;
+
+    /**
+     * IDs of servers whose status update has been skipped because they were
+     * locked.
+     * <p>
+     * The container of these servers is inspected once the lock is released,
+     * since the skipped update would otherwise be lost until the next
+     * reconciliation.
+     */
+    private final Set<UUID> skippedStatusUpdates = ConcurrentHashMap.newKeySet();
+
     /**
      * The external address of the Docker server.
      * <p>
@@ -87,10 +108,6 @@ public class ServerService {
     @Value("${see.app.docker.host.external}")
     private String externalDockerHost;
 
-    /**
-     * The lock manager for concurrent writes.
-     */
-    private final ServerLockManager lockManager = ServerLockManager.getInstance();
 
     /**
      * Used for the random port generation.
@@ -114,14 +131,19 @@ public class ServerService {
 
     /**
      * Retrieves a server by its ID.
+     * <p>
+     * The server is loaded only once per request.
      *
      * @param id the ID of the server
      * @return the server if found, or {@code null} if not found
+     * @see RequestEntityCache
      */
     @Transactional(readOnly = true)
     public Server get(UUID id) {
-        log.info("Fetching server {}", id);
-        return serverRepo.findById(id).orElse(null);
+        return requestCache.get(Server.class, id, serverId -> {
+            log.info("Fetching server {}", serverId);
+            return serverRepo.findById(serverId).orElse(null);
+        });
     }
 
     /**
@@ -174,7 +196,7 @@ public class ServerService {
         server = serverRepo.save(server);
         serverId = server.getId();
 
-        final User user = userService.create(serverId.toString(), password, RoleType.ROLE_USER);
+        final User user = userService.createWithMachineCredential(serverId.toString(), password, RoleType.ROLE_USER);
         userService.addServer(user, server);
 
         return server;
@@ -210,6 +232,40 @@ public class ServerService {
         return null;
     }
 
+    /**
+     * Adds a new file to a server by its ID, reading the content from a
+     * stream.
+     * <p>
+     * The file will be crated and associated to the given server.
+     *
+     * @param serverId the ID identifying the server instance
+     * @param projectTypeStr the project type of the file
+     * @param name the name of the file
+     * @param contentType the media type of the file, or {@code null} if
+     * unknown
+     * @param inputStream the file content
+     * @return the created file, or {@code null} if the server was not found or
+     * an error occurred while storing the file
+     */
+    public File addFile(UUID serverId, String projectTypeStr, String name, String contentType, InputStream inputStream) {
+        Optional<Server> optServer = serverRepo.findById(serverId);
+        if (optServer.isEmpty()) {
+            log.error("Server not found with ID: {}", serverId);
+            return null;
+        }
+        Server server = optServer.get();
+
+        ProjectType projectType = ProjectType.valueOf(projectTypeStr);
+        log.info("Adding file {} to server {}", name, server.getName());
+
+        try {
+            return fileService.create(server, projectType, name, contentType, inputStream);
+        } catch (IOException e) {
+            log.error("Unable to add file to server {}: ", serverId, e);
+        }
+        return null;
+    }
+
     /**
      * Retrieves all files for a specific server identified by its ID.
      *
@@ -246,21 +302,11 @@ public class ServerService {
             throw new EntityNotFoundException("No server found with ID " + id);
         }
 
-        final Lock lock = lockManager.getLock(id);
-        try {
-            if (lock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS)) {
-                log.debug("Lock acquired: {}", server.getId());
-            } else {
-                log.debug("Timeout while waiting for lock: {}", id);
-                throw new IllegalStateException("Try again later.");
-            }
-        } catch (InterruptedException ex) {
-            log.debug("Interrupted while waiting for lock: {}", id);
-            throw new IllegalStateException("The process was interrupted.");
-        }
+        final ServerLockManager.ServerLock lock = lock(id);
 
         try {
             log.info("Deleting server {}", id);
+            fence(server, lock);
             try {
                 containerService.deleteContainer(server);
             } catch (NotFoundException e) {
@@ -270,10 +316,10 @@ public class ServerService {
             fileService.deleteFilesByServer(server);
             serverRepo.deleteById(id);
             userService.deleteByUsername(id.toString());
-            lockManager.removeLock(id);
+            requestCache.invalidate(Server.class, id);
+            skippedStatusUpdates.remove(id);
         } finally {
-            lock.unlock();
-            log.debug("Lock released: {}", id);
+            unlock(server, lock);
         }
     }
 
@@ -294,21 +340,11 @@ public class ServerService {
             throw new EntityNotFoundException("No server found with ID " + id);
         }
 
-        final Lock lock = lockManager.getLock(id);
-        try {
-            if (lock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS)) {
-                log.debug("Lock acquired: {}", server.getId());
-            } else {
-                log.debug("Timeout while waiting for lock: {}", id);
-                throw new IllegalStateException("Try again later.");
-            }
-        } catch (InterruptedException ex) {
-            log.debug("Interrupted while waiting for lock: {}", id);
-            throw new IllegalStateException("The process was interrupted.");
-        }
+        final ServerLockManager.ServerLock lock = lock(id);
 
         try {
             log.info("Starting server {}", id);
+            fence(server, lock);
 
             try {
                 containerService.startContainer(server);
@@ -324,8 +360,7 @@ public class ServerService {
             server.setStopTime(null);
             server.setStartTime(ZonedDateTime.now(ZoneId.of("UTC")));
         } finally {
-            lock.unlock();
-            log.debug("Lock released: {}", id);
+            unlock(server, lock);
         }
     }
 
@@ -345,21 +380,11 @@ public class ServerService {
             throw new EntityNotFoundException("No server found with ID " + id);
         }
 
-        final Lock lock = lockManager.getLock(server);
-        try {
-            if (lock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS)) {
-                log.debug("Lock acquired: {}", server.getId());
-            } else {
-                log.debug("Timeout while waiting for lock: {}", id);
-                throw new IllegalStateException("Try again later.");
-            }
-        } catch (InterruptedException ex) {
-            log.debug("Interrupted while waiting for lock: {}", server.getId());
-            throw new IllegalStateException("The process was interrupted.");
-        }
+        final ServerLockManager.ServerLock lock = lock(id);
 
         try {
             log.info("Stopping server {}", id);
+            fence(server, lock);
             containerService.stopContainer(server);
         } catch (NotFoundException e) {
             throw new IllegalStateException("The container to be stopped does not exist!", e);
@@ -367,8 +392,7 @@ public class ServerService {
             server.setStatus(ServerStatusType.OFFLINE);
             throw new IllegalStateException("The container is already stopped!", e);
         } finally {
-            lock.unlock();
-            log.debug("Lock released: {}", id);
+            unlock(server, lock);
         }
 
         server.setStatus(ServerStatusType.OFFLINE);
@@ -389,39 +413,168 @@ public class ServerService {
         ServerStatusType newStatus = containerService.isRunning(server)
                 ? ServerStatusType.ONLINE
                 : ServerStatusType.OFFLINE;
+        setStatus(server, newStatus);
+    }
+
+    /**
+     * Update the server status based on a container event.
+     * <p>
+     * This method acquires a write lock on the server entity to synchronize
+     * write operations if the state has changed. The acquisition timeout is set
+     * to 0, since servers are locked while being started or stopped, which
+     * sets the status anyway.
+     *
+     * @param id the ID of the server
+     * @param newStatus the status according to the container event
+     */
+    public void updateStatus(UUID id, ServerStatusType newStatus) {
+        serverRepo.findById(id).ifPresent(server -> setStatus(server, newStatus));
+    }
+
+    /**
+     * Convenience function to update all server status.
+     * <p>
+     * The state of all containers is retrieved with a single request and
+     * matched against the servers. Only containers that have been created by
+     * earlier versions, which cannot be retrieved this way, are inspected
+     * individually.
+     */
+    public void updateStatus() {
+        final Map<UUID, Boolean> runningStates = containerService.getRunningStates();
+        for (Server server : getAll()) {
+            final Boolean running = runningStates.get(server.getId());
+            if (running == null && server.getContainerId() != null) {
+                updateStatus(server);
+                continue;
+            }
+            setStatus(server, Boolean.TRUE.equals(running)
+                    ? ServerStatusType.ONLINE
+                    : ServerStatusType.OFFLINE);
+        }
+    }
+
+    /**
+     * Sets the status of a server unless it is locked.
+     * <p>
+     * If the server is locked, the update is skipped and the container is
+     * inspected again once the lock is released.
+     *
+     * @param server the server
+     * @param newStatus the new status
+     */
+    private void setStatus(Server server, ServerStatusType newStatus) {
         if (server.getStatus() == newStatus) {
             return;
         }
 
-        final Lock lock = lockManager.getLock(server);
+        // Recorded in advance, so that a holder releasing the lock right now
+        // does not miss it
+        skippedStatusUpdates.add(server.getId());
+        final ServerLockManager.ServerLock lock;
         try {
-            if (lock.tryLock(0, TimeUnit.SECONDS)) {
-                log.debug("Lock acquired: {}", server.getId());
-            } else {
-                log.debug("Timeout while waiting for lock: {}", server.getId());
-                return;
-            }
+            lock = lockManager.tryLock(server.getId(), 0, TimeUnit.SECONDS);
         } catch (InterruptedException ex) {
             log.debug("Interrupted while waiting for lock: {}", server.getId());
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (lock == null) {
+            log.debug("Skipped status update of locked server {}", server.getId());
             return;
         }
+        log.debug("Lock acquired: {}", server.getId());
+        skippedStatusUpdates.remove(server.getId());
 
         try {
             server.setStatus(newStatus);
 
         } finally {
-            lock.unlock();
+            unlock(server, lock);
+        }
+    }
+
+    /**
+     * Releases the lock of a server and inspects its container if a status
+     * update has been skipped while the lock was held.
+     * <p>
+     * The container is inspected before the lock is released, since the lease
+     * of the server is only released after the current transaction. Updates
+     * skipped right before the release are applied afterwards.
+     *
+     * @param server the server
+     * @param lock the held lock of the server
+     */
+    private void unlock(Server server, ServerLockManager.ServerLock lock) {
+        try {
+            if (skippedStatusUpdates.remove(server.getId())) {
+                log.debug("Inspecting container of server {} after skipped status update", server.getId());
+                server.setStatus(containerService.isRunning(server)
+                        ? ServerStatusType.ONLINE
+                        : ServerStatusType.OFFLINE);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to update status of server {}: {}", server.getId(), e.getMessage());
+        } finally {
+            lock.close();
             log.debug("Lock released: {}", server.getId());
         }
+
+        if (skippedStatusUpdates.remove(server.getId())) {
+            try {
+                updateStatus(server);
+            } catch (RuntimeException e) {
+                log.warn("Failed to update status of server {}: {}", server.getId(), e.getMessage());
+            }
+        }
     }
 
     /**
-     * Convenience function to update all server status.
+     * Acquires the lock of a server to synchronize write operations.
+     *
+     * @param id the ID of the server
+     * @return the held lock, which must be closed to release it
+     * @throws IllegalStateException if the lock cannot be acquired within
+     * {@link #LOCK_TIMEOUT} seconds or the thread is interrupted
      */
-    public void updateStatus() {
-        for (Server server : getAll()) {
-            updateStatus(server);
+    private ServerLockManager.ServerLock lock(UUID id) throws IllegalStateException {
+        final ServerLockManager.ServerLock lock;
+        try {
+            lock = lockManager.tryLock(id, LOCK_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            log.debug("Interrupted while waiting for lock: {}", id);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The process was interrupted.");
+        }
+        if (lock == null) {
+            log.debug("Timeout while waiting for lock: {}", id);
+            throw new IllegalStateException("Try again later.");
+        }
+        log.debug("Lock acquired: {}", id);
+        return lock;
+    }
+
+    /**
+     * Ensures that the lease of a server has not been acquired by another
+     * instance since the given lock has been acquired, before the container
+     * or the entity of the server is modified.
+     * <p>
+     * Nothing is checked if cluster coordination is disabled.
+     *
+     * @param server the server to be modified
+     * @param lock the held lock of the server
+     * @throws IllegalStateException if the server has been modified by
+     * another instance with a newer lease
+     */
+    private void fence(Server server, ServerLockManager.ServerLock lock) throws IllegalStateException {
+        final Long token = lock.getFencingToken();
+        if (token == null) {
+            return;
+        }
+        if (serverRepo.fence(server.getId(), token) == 0) {
+            log.warn("Rejected outdated modification of server {} with fencing token {}", server.getId(), token);
+            throw new IllegalStateException("The server has been modified concurrently.");
         }
+        server.setFencingToken(token);
     }
 
     /**
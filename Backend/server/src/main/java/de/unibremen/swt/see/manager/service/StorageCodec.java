@@ -0,0 +1,99 @@
+package de.unibremen.swt.see.manager.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents the codecs that can be used to compress file contents at rest.
+ * <p>
+ * The codecs correspond to HTTP content codings, so that stored contents can
+ * be sent to clients without decompressing them.
+ *
+ * @see FileService
+ */
+@Getter
+@RequiredArgsConstructor
+public enum StorageCodec {
+
+    /**
+     * Contents are stored as they are.
+     */
+    NONE(null, ""),
+    /**
+     * Contents are compressed using gzip.
+     */
+    GZIP("gzip", ".gz"),
+    /**
+     * Contents are compressed using Zstandard.
+     */
+    ZSTD("zstd", ".zst");
+
+    /**
+     * The HTTP content coding of the codec, or {@code null} for
+     * {@link #NONE}.
+     */
+    private final String contentEncoding;
+
+    /**
+     * File name extension of blobs stored with this codec.
+     */
+    private final String extension;
+
+    /**
+     * Wraps the given stream to compress the data written to it.
+     *
+     * @param out the stream to write the compressed data to
+     * @return the compressing stream
+     * @throws IOException if the stream cannot be initialized
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        return switch (this) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, 64 * 1024);
+            case ZSTD -> new ZstdOutputStream(out);
+        };
+    }
+
+    /**
+     * Wraps the given stream to decompress the data read from it.
+     *
+     * @param in the stream to read the compressed data from
+     * @return the decompressing stream
+     * @throws IOException if the stream cannot be initialized, e.g., due to
+     * an invalid header
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, 64 * 1024);
+            case ZSTD -> new ZstdInputStream(in);
+        };
+    }
+
+    /**
+     * Returns the codec for the given HTTP content coding.
+     *
+     * @param contentEncoding the content coding, or {@code null} for
+     * uncompressed contents
+     * @return the corresponding codec
+     * @throws IllegalArgumentException if the content coding is not supported
+     */
+    public static StorageCodec forContentEncoding(String contentEncoding) {
+        if (contentEncoding == null) {
+            return NONE;
+        }
+        for (StorageCodec codec : values()) {
+            if (contentEncoding.equals(codec.contentEncoding)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+    }
+}
@@ -0,0 +1,347 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.ProjectType;
+import de.unibremen.swt.see.manager.model.Server;
+import jakarta.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class for resumable chunked file uploads.
+ * <p>
+ * Large files can be uploaded in consecutive chunks. If the connection drops,
+ * the client can query the number of bytes received so far and continue from
+ * there. The upload protocol consists of the following steps:
+ * <ol>
+ * <li>{@link #create} starts a new upload session.</li>
+ * <li>{@link #writeChunk} appends a chunk at the current offset of the
+ * session.</li>
+ * <li>{@link #finish} links the uploaded content into the blob store and
+ * registers the file with the {@link FileService}.</li>
+ * </ol>
+ * <p>
+ * The chunks are written to a single file in the staging area, so that
+ * finishing an upload does not copy the data again if the file system supports
+ * hard links. Sessions are kept in
+ * memory and expire if they are not used for a configurable period.
+ * <p>
+ * As the sessions are not shared with other instances, resumable uploads are
+ * not available if cluster coordination is enabled. Files can still be
+ * uploaded in a single request.
+ *
+ * @see UploadSession
+ * @see de.unibremen.swt.see.manager.controller.UploadController
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadService {
+
+    /**
+     * Size of the buffer used to write chunks.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Used to access servers.
+     */
+    private final ServerService serverService;
+
+    /**
+     * Used to register finished uploads.
+     */
+    private final FileService fileService;
+
+    /**
+     * Provides the staging area for uploads.
+     */
+    private final BlobStore blobStore;
+
+    /**
+     * Upload sessions in progress by ID.
+     */
+    private final Map<UUID, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Time in milliseconds after which unused upload sessions expire.
+     * <p>
+     * The value is configured in the application properties and gets injected
+     * during class initialization.
+     */
+    @Value("${see.app.upload.sessionExpirationMs}")
+    private long sessionExpirationMs;
+
+    /**
+     * Whether multiple instances of the back-end share the database, in which
+     * case subsequent requests of an upload might reach other instances.
+     */
+    @Value("${see.app.cluster.enabled}")
+    private boolean clusterEnabled;
+
+    /**
+     * Starts a new upload session.
+     *
+     * @param serverId the ID of the server the file will be added to
+     * @param projectTypeStr the project type of the file
+     * @param name the name of the file
+     * @param contentType the media type of the file, or {@code null} if
+     * unknown
+     * @param size the announced total size of the file in bytes, or
+     * {@code null} if unknown
+     * @return the new upload session
+     * @throws EntityNotFoundException if the server does not exist
+     * @throws IllegalArgumentException if the project type is invalid
+     * @throws UnsupportedOperationException if cluster coordination is
+     * enabled
+     * @throws IOException if the staging file cannot be created
+     */
+    public UploadSession create(UUID serverId, String projectTypeStr, String name, String contentType, Long size)
+            throws IOException {
+        if (clusterEnabled) {
+            throw new UnsupportedOperationException("Resumable uploads are not supported by multiple instances.");
+        }
+        if (serverService.get(serverId) == null) {
+            throw new EntityNotFoundException("Server not found with ID: " + serverId);
+        }
+        final ProjectType projectType = ProjectType.valueOf(projectTypeStr);
+        if (size != null && size < 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+
+        final UploadSession session = new UploadSession(UUID.randomUUID(), serverId, projectType, name, contentType,
+                size, blobStore.createStagingFile(), FileService.newDigest());
+        touch(session);
+        sessions.put(session.getId(), session);
+        log.info("Started upload {} of file {} for server {}", session.getId(), name, serverId);
+        return session;
+    }
+
+    /**
+     * Retrieves an upload session by its ID.
+     *
+     * @param id the ID of the upload session
+     * @return the upload session if found, or {@code null} if not found
+     */
+    public UploadSession get(UUID id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Appends a chunk to the upload.
+     * <p>
+     * The chunk must start at the current offset of the session. If the stream
+     * is interrupted, the bytes received until then are kept and the offset
+     * is advanced accordingly, so that the client can resume the upload.
+     *
+     * @param id the ID of the upload session
+     * @param offset the position of the chunk within the file
+     * @param inputStream the chunk content
+     * @return the updated upload session
+     * @throws EntityNotFoundException if the upload session does not exist
+     * @throws IllegalStateException if the offset does not match, the upload
+     * would exceed the announced size, another chunk is being written, or
+     * finishing the upload has already been attempted
+     * @throws IOException if the chunk cannot be read or written
+     */
+    public UploadSession writeChunk(UUID id, long offset, InputStream inputStream) throws IOException {
+        final UploadSession session = getSession(id);
+        if (!session.lock.tryLock()) {
+            throw new IllegalStateException("Another chunk is being written.");
+        }
+        try {
+            if (session.sealed) {
+                throw new IllegalStateException("Upload is being finished.");
+            }
+            if (offset != session.getOffset()) {
+                throw new IllegalStateException("Chunk offset " + offset + " does not match upload offset "
+                        + session.getOffset() + ".");
+            }
+
+            try (FileChannel channel = FileChannel.open(session.path, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+                channel.position(offset);
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) {
+                    if (session.getSize() != null && session.getOffset() + read > session.getSize()) {
+                        throw new IllegalStateException("Upload exceeds announced size of " + session.getSize()
+                                + " bytes.");
+                    }
+                    final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                    session.digest.update(buffer, 0, read);
+                    session.advance(read);
+                }
+            } finally {
+                touch(session);
+            }
+            return session;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes the upload and registers the file.
+     * <p>
+     * The uploaded content is linked into the blob store, so that the staging
+     * file of the session remains intact. If the file cannot be registered,
+     * the session is retained until it expires or is cancelled, so that
+     * finishing can be retried. No more chunks are accepted after the first
+     * attempt, as the content may already share its storage with a blob.
+     *
+     * @param id the ID of the upload session
+     * @return the created file
+     * @throws EntityNotFoundException if the upload session or the server does
+     * not exist
+     * @throws IllegalStateException if the upload is incomplete or a chunk is
+     * being written
+     * @throws IOException if the file cannot be stored
+     */
+    public File finish(UUID id) throws IOException {
+        final UploadSession session = getSession(id);
+        if (!session.lock.tryLock()) {
+            throw new IllegalStateException("A chunk is being written.");
+        }
+        try {
+            if (session.getSize() != null && session.getOffset() != session.getSize()) {
+                throw new IllegalStateException("Upload is incomplete: " + session.getOffset() + " of "
+                        + session.getSize() + " bytes received.");
+            }
+            if (session.getOffset() == 0) {
+                throw new IllegalStateException("Upload is empty.");
+            }
+            final Server server = serverService.get(session.getServerId());
+            if (server == null) {
+                throw new EntityNotFoundException("Server not found with ID: " + session.getServerId());
+            }
+
+            session.sealed = true;
+            final Path stagingPath = blobStore.createStagingLink(session.path);
+            final File file;
+            try {
+                file = fileService.create(server, session.getProjectType(), session.getName(),
+                        session.getContentType(), stagingPath, cloneDigest(session.digest));
+            } finally {
+                Files.deleteIfExists(stagingPath);
+            }
+            remove(session);
+            log.info("Finished upload {} of file {} for server {}", id, file.getId(), server.getId());
+            return file;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the upload and deletes the content received so far.
+     *
+     * @param id the ID of the upload session
+     * @throws EntityNotFoundException if the upload session does not exist
+     * @throws IllegalStateException if a chunk is being written
+     */
+    public void cancel(UUID id) {
+        final UploadSession session = getSession(id);
+        if (!session.lock.tryLock()) {
+            throw new IllegalStateException("A chunk is being written.");
+        }
+        try {
+            log.info("Cancelling upload {}", id);
+            remove(session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes expired upload sessions on a fixed interval.
+     * <p>
+     * Sessions that are currently in use are skipped.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void expireSessions() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        for (UploadSession session : sessions.values()) {
+            if (session.getExpirationTime().isAfter(now) || !session.lock.tryLock()) {
+                continue;
+            }
+            try {
+                log.info("Upload {} expired", session.getId());
+                remove(session);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Retrieves an upload session by its ID.
+     *
+     * @param id the ID of the upload session
+     * @return the upload session
+     * @throws EntityNotFoundException if the upload session does not exist
+     */
+    private UploadSession getSession(UUID id) {
+        final UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new EntityNotFoundException("Upload not found with ID: " + id);
+        }
+        return session;
+    }
+
+    /**
+     * Removes the session and deletes its staging file.
+     *
+     * @param session the session to remove
+     */
+    private void remove(UploadSession session) {
+        sessions.remove(session.getId());
+        try {
+            Files.deleteIfExists(session.path);
+        } catch (IOException e) {
+            log.error("Unable to delete staging file of upload {}: ", session.getId(), e);
+        }
+    }
+
+    /**
+     * Extends the expiration time of the session.
+     *
+     * @param session the session that is being used
+     */
+    private void touch(UploadSession session) {
+        session.setExpirationTime(ZonedDateTime.now().plus(sessionExpirationMs, ChronoUnit.MILLIS));
+    }
+
+    /**
+     * Creates a copy of the digest, so that finishing can be retried.
+     *
+     * @param digest the digest to copy
+     * @return the copy
+     */
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Digest cannot be cloned!", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package de.unibremen.swt.see.manager.service;
+
+import de.unibremen.swt.see.manager.model.ProjectType;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents a resumable upload in progress.
+ * <p>
+ * The content is uploaded in consecutive chunks that are appended to a single
+ * file in the staging area of the {@link BlobStore}. The digest of the content
+ * is updated with each chunk, so that the file does not need to be read again
+ * when the upload is finished.
+ * <p>
+ * Sessions are kept in memory only. Instances are serialized to report the
+ * upload state to clients.
+ *
+ * @see UploadService
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class UploadSession {
+
+    /**
+     * ID of the upload session.
+     */
+    private final UUID id;
+
+    /**
+     * ID of the server the file will be added to.
+     */
+    private final UUID serverId;
+
+    /**
+     * The project type of the file.
+     */
+    private final ProjectType projectType;
+
+    /**
+     * The name of the file.
+     */
+    private final String name;
+
+    /**
+     * The media type of the file, or {@code null} if unknown.
+     */
+    private final String contentType;
+
+    /**
+     * The announced total size of the file in bytes, or {@code null} if
+     * unknown.
+     */
+    private final Long size;
+
+    /**
+     * Number of bytes received so far.
+     * <p>
+     * The next chunk needs to start at this offset.
+     */
+    private long offset;
+
+    /**
+     * Point in time after which the session expires if it is not used.
+     */
+    private ZonedDateTime expirationTime;
+
+    /**
+     * Path of the file the content is written to.
+     */
+    @Getter(AccessLevel.NONE)
+    final Path path;
+
+    /**
+     * Digest of the content received so far.
+     */
+    @Getter(AccessLevel.NONE)
+    final MessageDigest digest;
+
+    /**
+     * Whether finishing the upload has been attempted.
+     * <p>
+     * No more chunks are accepted afterwards, as the staged content may share
+     * its storage with a blob.
+     */
+    @Getter(AccessLevel.NONE)
+    boolean sealed;
+
+    /**
+     * Serializes operations on this session.
+     */
+    @Getter(AccessLevel.NONE)
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Advances the offset by the number of received bytes.
+     *
+     * @param count the number of received bytes
+     */
+    void advance(long count) {
+        offset += count;
+    }
+
+    /**
+     * Sets the point in time after which the session expires.
+     *
+     * @param expirationTime the expiration time
+     */
+    void setExpirationTime(ZonedDateTime expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+}
@@ -6,6 +6,9 @@ import de.unibremen.swt.see.manager.model.Server;
 import de.unibremen.swt.see.manager.model.User;
 import de.unibremen.swt.see.manager.repository.RoleRepository;
 import de.unibremen.swt.see.manager.repository.UserRepository;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
+import de.unibremen.swt.see.manager.security.TokenRevocationList;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -47,6 +50,33 @@ public class UserService {
      */
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Hashes machine credentials.
+     */
+    private final PasswordEncoder machineCredentialEncoder = new Sha256PasswordEncoder();
+
+    /**
+     * Caches user details for authentication and needs to be invalidated on
+     * changes.
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Used to revoke tokens containing outdated user details.
+     */
+    private final TokenRevocationList revocationList;
+
+    /**
+     * Memoizes users looked up during a request.
+     */
+    private final RequestEntityCache requestCache;
+
+    /**
+     * Used to revoke refresh tokens if the password changes or the user is
+     * deleted.
+     */
+    private final RefreshTokenService refreshTokenService;
+
     /**
      * Creates a new user from the provided attributes.
      *
@@ -67,15 +97,46 @@ public class UserService {
         return addRole(user, roleType);
     }
 
+    /**
+     * Creates a new user authenticated by a machine credential.
+     * <p>
+     * In contrast to {@link #create(String, String, RoleType)}, the password is
+     * hashed using a fast hash function instead of BCrypt. This is only secure
+     * for randomly generated passwords with high entropy, like the passwords of
+     * server accounts. The password can be verified using the regular
+     * {@link PasswordEncoder}.
+     *
+     * @param username username of the new user
+     * @param secret the randomly generated password of the new user
+     * @param roleType type of the role assigned to the new user
+     * @return the created user, or {@code null} if the username is already
+     * taken or the role could not be assigned.
+     * @see Sha256PasswordEncoder
+     */
+    public User createWithMachineCredential(String username, String secret, RoleType roleType) {
+        log.info("Creating new user {} with machine credential", username);
+        if (userRepo.findByUsername(username).isPresent()) {
+            log.error("Username {} is already taken", username);
+            return null;
+        }
+        final String encodedSecret = "{" + Sha256PasswordEncoder.ID + "}" + machineCredentialEncoder.encode(secret);
+        User user = userRepo.save(new User(username, encodedSecret));
+
+        return addRole(user, roleType);
+    }
+
     /**
      * Retrieves a user by its ID.
+     * <p>
+     * The user is loaded only once per request.
      *
      * @param id the ID of the user
      * @return the user if found, or {@code null} if not found
+     * @see RequestEntityCache
      */
     @Transactional(readOnly = true)
     public User get(UUID id) {
-        return userRepo.findById(id).orElse(null);
+        return requestCache.get(User.class, id, userId -> userRepo.findById(userId).orElse(null));
     }
 
     /**
@@ -96,6 +157,7 @@ public class UserService {
         if (user != null && passwordEncoder.matches(password, user.getPassword())) {
             log.info("Changing username form {} to {}", oldUsername, newUsername);
             user.setUsername(newUsername);
+            invalidate(oldUsername);
             return user;
         }
 
@@ -125,6 +187,7 @@ public class UserService {
         Role role = optRole.get();
 
         user.getRoles().add(role);
+        invalidate(user.getUsername());
         return user;
     }
 
@@ -159,6 +222,7 @@ public class UserService {
         }
         log.info("Adding server {} to {}", server.getId(), user.getUsername());
         user.getServers().add(server);
+        invalidate(user.getUsername());
         return user;
     }
 
@@ -187,6 +251,7 @@ public class UserService {
         Role role = optRole.get();
 
         user.getRoles().remove(role);
+        invalidate(username);
         return user;
     }
 
@@ -204,7 +269,7 @@ public class UserService {
      */
     public boolean changePassword(String username, String oldPassword, String newPassword) {
         Optional<User> optUser = userRepo.findByUsername(username);
-        if (optUser.isPresent()) {
+        if (optUser.isEmpty()) {
             log.error("A user tried to change their password with wrong username.");
             return false;
         }
@@ -212,6 +277,8 @@ public class UserService {
         
         if (passwordEncoder.matches(oldPassword, user.getPassword())) {
             user.setPassword(passwordEncoder.encode(newPassword));
+            invalidate(username);
+            refreshTokenService.revokeAll(user.getId());
             log.info("A user changed their password.");
             return true;
         }
@@ -247,6 +314,9 @@ public class UserService {
      */
     public void delete(UUID id) {
         log.info("Deleting user by ID: {}", id);
+        userRepo.findById(id).ifPresent(user -> invalidate(user.getUsername()));
+        requestCache.invalidate(User.class, id);
+        refreshTokenService.revokeAll(id);
         userRepo.deleteById(id);
     }
 
@@ -257,7 +327,12 @@ public class UserService {
      */
     public void deleteByUsername(String username) {
         log.info("Deleting user by username: {}", username);
+        userRepo.findByUsername(username).ifPresent(user -> {
+            requestCache.invalidate(User.class, user.getId());
+            refreshTokenService.revokeAll(user.getId());
+        });
         userRepo.deleteByUsername(username);
+        invalidate(username);
     }
 
     /**
@@ -282,6 +357,23 @@ public class UserService {
         return false;
     }
 
+    /**
+     * Checks if a user has access to given server, either as admin or by
+     * assignment.
+     * <p>
+     * In contrast to {@link #hasRole(User, RoleType)} and
+     * {@link #hasServer(User, Server)}, this does not load the user or their
+     * roles and servers.
+     *
+     * @param userId the ID of the user
+     * @param serverId the ID of the server
+     * @return {@code true} if given user has access to given server
+     */
+    @Transactional(readOnly = true)
+    public boolean hasServerAccess(UUID userId, UUID serverId) {
+        return userId != null && userRepo.hasServerAccess(userId, serverId);
+    }
+
     /**
      * Checks if a user has access to given server.
      *
@@ -293,4 +385,14 @@ public class UserService {
         return user != null && server != null && user.getServers().contains(server);
     }
 
+    /**
+     * Invalidates cached details and issued tokens of the user with given
+     * username after a change.
+     *
+     * @param username the username of the changed user
+     */
+    private void invalidate(String username) {
+        userDetailsCache.invalidate(username);
+        revocationList.revokeUser(username);
+    }
 }
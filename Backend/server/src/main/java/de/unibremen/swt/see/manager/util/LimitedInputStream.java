@@ -0,0 +1,108 @@
+package de.unibremen.swt.see.manager.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.Getter;
+
+/**
+ * Input stream that fails as soon as more than a maximum number of bytes has
+ * been read.
+ * <p>
+ * This is used to limit the size of request bodies that are streamed directly
+ * into the file storage, where the size is not known in advance. Once the
+ * limit is exceeded, every read throws an {@link IOException} and
+ * {@link #isLimitExceeded()} returns {@code true}, so that callers can tell
+ * this case apart from other I/O errors.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    /**
+     * The maximum number of bytes that may be read.
+     */
+    @Getter
+    private final long maxBytes;
+
+    /**
+     * The number of bytes read so far.
+     */
+    private long count;
+
+    /**
+     * Whether more than the maximum number of bytes have been read.
+     */
+    @Getter
+    private boolean limitExceeded;
+
+    /**
+     * Creates a new stream reading at most {@code maxBytes} bytes from given
+     * stream.
+     *
+     * @param in the stream to read from
+     * @param maxBytes the maximum number of bytes
+     */
+    public LimitedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (limitExceeded) {
+            throw exceeded();
+        }
+        final int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (limitExceeded) {
+            throw exceeded();
+        }
+        // Read one byte more than allowed to detect an exceeded limit
+        final int read = super.read(b, off, (int) Math.min(len, maxBytes - count + 1));
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Adds given number of bytes to the count and checks the limit.
+     *
+     * @param bytes the number of bytes read
+     * @throws IOException if the limit has been exceeded
+     */
+    private void count(long bytes) throws IOException {
+        count += bytes;
+        if (count > maxBytes) {
+            limitExceeded = true;
+            throw exceeded();
+        }
+    }
+
+    /**
+     * Creates the exception reporting an exceeded limit.
+     *
+     * @return the exception
+     */
+    private IOException exceeded() {
+        return new IOException("Maximum size of " + maxBytes + " bytes exceeded");
+    }
+}
@@ -1,75 +1,327 @@
 package de.unibremen.swt.see.manager.util;
 
-import de.unibremen.swt.see.manager.model.Server;
-import java.util.HashMap;
+import de.unibremen.swt.see.manager.service.LeaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
- * This singleton manages the locks to synchronize writes on server entities.
+ * Manages the locks to synchronize writes on server entities.
+ * <p>
+ * Locks are created on demand and reference-counted: each caller waiting for
+ * or holding the lock of a server holds a reference. The lock is removed as
+ * soon as the last reference is released. Since references are only taken and
+ * released atomically within the map, a lock that is held or waited for is
+ * never removed, so all callers for the same server always use the same lock.
+ * <p>
+ * If cluster coordination is enabled, a lease of the server is acquired from
+ * the database in addition to the local lock, so that operations on the same
+ * server are also synchronized across instances. The local lock is acquired
+ * first, so that callers of the same instance wait locally instead of polling
+ * the database. The fencing token of the lease is available from the held
+ * lock to reject writes of holders whose lease has expired meanwhile. If the
+ * lock is released within a transaction, the lease is only released after
+ * the transaction has completed, so that the changes are visible to the next
+ * holder.
+ * <p>
+ * The following metrics are published:
+ * <ul>
+ * <li>{@code server.lock.wait}: time spent waiting for a lock</li>
+ * <li>{@code server.lock.timeouts}: number of timed out lock attempts;
+ * attempts that do not wait, e.g., of status updates, are not counted</li>
+ * <li>{@code server.lock.count}: number of locks currently in use</li>
+ * </ul>
  */
+@Component
 public class ServerLockManager {
 
     /**
-     * Singleton instance.
+     * Initial delay in milliseconds between attempts to acquire a lease.
      */
-    private static final ServerLockManager instance = new ServerLockManager();
+    private static final long MIN_RETRY_DELAY_MS = 50;
 
     /**
-     * The stored locks.
+     * Maximum delay in milliseconds between attempts to acquire a lease.
      */
-    private final Map<UUID, ReentrantLock> locks = new HashMap<>();
+    private static final long MAX_RETRY_DELAY_MS = 1000;
 
     /**
-     * Private constructor to prevent instantiation (singleton).
+     * The locks in use by server ID.
      */
-    private ServerLockManager() {
+    private final Map<UUID, Entry> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Records the time spent waiting for locks.
+     */
+    private final Timer waitTimer;
+
+    /**
+     * Counts lock attempts that timed out.
+     */
+    private final Counter timeoutCounter;
+
+    /**
+     * Acquires the leases of servers; {@code null} if cluster coordination is
+     * disabled.
+     */
+    private final LeaseService leaseService;
+
+    /**
+     * Time after which a lease of a server expires.
+     */
+    private final Duration leaseTtl;
+
+    /**
+     * A lock along with the number of its references.
+     */
+    private static final class Entry {
+
+        /**
+         * The lock.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Number of callers waiting for or holding the lock; only modified
+         * while the entry is being computed in the map.
+         */
+        private int references;
     }
 
     /**
-     * Returns the instance of ServerLockManager.
-     * @return the {@code ServerLockManager} instance
+     * A held lock of a server.
+     * <p>
+     * The lock must be released exactly once by the thread that acquired it,
+     * preferably using a {@code try}-with-resources statement.
+     */
+    public final class ServerLock implements AutoCloseable {
+
+        /**
+         * ID of the locked server.
+         */
+        private final UUID serverId;
+
+        /**
+         * The entry of the held lock.
+         */
+        private final Entry entry;
+
+        /**
+         * The fencing token of the held lease, or {@code null} if cluster
+         * coordination is disabled.
+         */
+        private final Long fencingToken;
+
+        /**
+         * Creates a handle for a held lock.
+         *
+         * @param serverId the ID of the locked server
+         * @param entry the entry of the held lock
+         * @param fencingToken the fencing token of the held lease, or
+         * {@code null} if cluster coordination is disabled
+         */
+        private ServerLock(UUID serverId, Entry entry, Long fencingToken) {
+            this.serverId = serverId;
+            this.entry = entry;
+            this.fencingToken = fencingToken;
+        }
+
+        /**
+         * Returns the fencing token of the lease held across instances.
+         * <p>
+         * Fencing tokens of the same server increase with each acquisition.
+         *
+         * @return the fencing token, or {@code null} if cluster coordination
+         * is disabled
+         */
+        public Long getFencingToken() {
+            return fencingToken;
+        }
+
+        /**
+         * Releases the lock.
+         */
+        @Override
+        public void close() {
+            entry.lock.unlock();
+            release(serverId, entry);
+            if (fencingToken != null) {
+                releaseLease(serverId, fencingToken);
+            }
+        }
+    }
+
+    /**
+     * Creates a lock manager that only synchronizes within this instance.
+     *
+     * @param meterRegistry the registry to publish the metrics to
+     */
+    public ServerLockManager(MeterRegistry meterRegistry) {
+        this(meterRegistry, null, 0);
+    }
+
+    /**
+     * Creates the lock manager.
+     *
+     * @param meterRegistry the registry to publish the metrics to
+     * @param leaseService the lease service used to synchronize across
+     * instances if cluster coordination is enabled
+     * @param leaseTtlMs the time in milliseconds after which a lease of a
+     * server expires; it must exceed the duration of any server operation
+     */
+    @Autowired
+    public ServerLockManager(
+            MeterRegistry meterRegistry,
+            LeaseService leaseService,
+            @Value("${see.app.cluster.lease-ttl-ms}") long leaseTtlMs) {
+        this.leaseService = leaseService != null && leaseService.isEnabled() ? leaseService : null;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        this.waitTimer = Timer.builder("server.lock.wait")
+                .description("Time spent waiting for server locks")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("server.lock.timeouts")
+                .description("Number of server lock attempts that timed out")
+                .register(meterRegistry);
+        Gauge.builder("server.lock.count", locks, Map::size)
+                .description("Number of server locks in use")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Acquires the lock of a server, waiting up to the given time.
+     *
+     * @param serverId the ID of the server
+     * @param timeout the maximum time to wait; {@code 0} does not wait
+     * @param unit the unit of the timeout
+     * @return the held lock, or {@code null} if the timeout elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public ServerLock tryLock(UUID serverId, long timeout, TimeUnit unit) throws InterruptedException {
+        final Entry entry = locks.compute(serverId, (id, existing) -> {
+            final Entry result = existing != null ? existing : new Entry();
+            result.references++;
+            return result;
+        });
+
+        final long start = System.nanoTime();
+        boolean acquired = false;
+        Long fencingToken = null;
+        try {
+            acquired = entry.lock.tryLock(timeout, unit);
+            if (acquired && leaseService != null) {
+                fencingToken = acquireLease(serverId, start + unit.toNanos(timeout));
+                if (fencingToken == null) {
+                    entry.lock.unlock();
+                    acquired = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            if (acquired) {
+                entry.lock.unlock();
+            }
+            release(serverId, entry);
+            throw e;
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (!acquired) {
+            if (timeout > 0) {
+                timeoutCounter.increment();
+            }
+            release(serverId, entry);
+            return null;
+        }
+        return new ServerLock(serverId, entry, fencingToken);
+    }
+
+    /**
+     * Returns the number of locks currently in use.
+     *
+     * @return the number of servers that are locked or waited for
      */
-    public static ServerLockManager getInstance() {
-        return instance;
+    public int size() {
+        return locks.size();
     }
 
     /**
-     * Retrieves or creates a lock associated with a server entity.
+     * Acquires the lease of a server, retrying with increasing delays until
+     * the deadline.
      *
-     * @param server the server entity
-     * @return the lock associated with the server entity
+     * @param serverId the ID of the server
+     * @param deadline the value of {@link System#nanoTime()} after which no
+     * further attempt is made
+     * @return the fencing token, or {@code null} if the deadline passed
+     * @throws InterruptedException if the thread is interrupted while waiting
      */
-    public ReentrantLock getLock(Server server) {
-        return locks.computeIfAbsent(server.getId(), k -> new ReentrantLock());
+    private Long acquireLease(UUID serverId, long deadline) throws InterruptedException {
+        long delayMs = MIN_RETRY_DELAY_MS;
+        while (true) {
+            final Long token = leaseService.tryAcquire(leaseName(serverId), leaseTtl);
+            final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (token != null || remainingMs <= 0) {
+                return token;
+            }
+            Thread.sleep(Math.min(delayMs, remainingMs));
+            delayMs = Math.min(delayMs * 2, MAX_RETRY_DELAY_MS);
+        }
     }
 
     /**
-     * Retrieves or creates a lock associated with a server entity.
+     * Releases the lease of a server, after the current transaction has
+     * completed if there is one.
      *
-     * @param serverId the ID of the server entity
-     * @return the lock associated with the server entity
+     * @param serverId the ID of the server
+     * @param fencingToken the fencing token of the held lease
      */
-    public ReentrantLock getLock(UUID serverId) {
-        return locks.computeIfAbsent(serverId, k -> new ReentrantLock());
+    private void releaseLease(UUID serverId, long fencingToken) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            leaseService.release(leaseName(serverId), fencingToken);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                leaseService.release(leaseName(serverId), fencingToken);
+            }
+        });
     }
 
     /**
-     * Removes a lock from the manager for given server entity.
+     * Returns the name of the lease of a server.
      *
-     * @param server the server entity
+     * @param serverId the ID of the server
+     * @return the lease name
      */
-    public void removeLock(Server server) {
-        locks.remove(server.getId());
+    private static String leaseName(UUID serverId) {
+        return "server:" + serverId;
     }
 
     /**
-     * Removes a lock from the manager for given server entity.
+     * Releases a reference to a lock and removes the lock if it is no longer
+     * referenced.
      *
-     * @param serverId the ID of the server entity
+     * @param serverId the ID of the server
+     * @param entry the referenced entry
      */
-    public void removeLock(UUID serverId) {
-        locks.remove(serverId);
+    private void release(UUID serverId, Entry entry) {
+        locks.computeIfPresent(serverId, (id, existing) -> {
+            if (existing != entry) {
+                throw new IllegalStateException("Lock of server " + serverId + " has been replaced.");
+            }
+            return --existing.references == 0 ? null : existing;
+        });
     }
 }
@@ -0,0 +1,95 @@
+package de.unibremen.swt.see.manager.benchmark;
+
+import de.unibremen.swt.see.manager.security.AuthTokenFilter;
+import de.unibremen.swt.see.manager.security.JwtUtils;
+import de.unibremen.swt.see.manager.security.TokenRevocationList;
+import de.unibremen.swt.see.manager.security.UserDetailsImpl;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures the cost of authenticating a request in {@link AuthTokenFilter}.
+ * <p>
+ * The filter runs in stateless mode, so that no database is involved and the
+ * cost is dominated by parsing and verifying the token. With
+ * {@code tokenCacheSize=0}, each request verifies the token again; otherwise,
+ * the claims are taken from the verified token cache after the first request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthTokenFilterBenchmark {
+
+    private static final String SECRET
+            = "W1hNyGkdbuhtuq317NtBlSs6sAnI/dBEW3vJLw/9/lKMmTAKH/7Xxyti0YUBQdVP1YWyukgxAW4fQaHu3rDigQ==";
+
+    private static final String COOKIE_NAME = "see";
+
+    private static final long EXPIRATION_MS = 86400000;
+
+    /**
+     * Maximum number of cached verified tokens; {@code 0} disables the cache.
+     */
+    @Param({"0", "10000"})
+    private long tokenCacheSize;
+
+    private AuthTokenFilter filter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() {
+        final JwtUtils jwtUtils = new JwtUtils(SECRET, tokenCacheSize);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", (int) EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtUtils, "jwtCookie", COOKIE_NAME);
+        ReflectionTestUtils.setField(jwtUtils, "stateless", true);
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "revocationList", new TokenRevocationList(EXPIRATION_MS, true, false, null));
+
+        final UserDetailsImpl user = new UserDetailsImpl(UUID.randomUUID(), UUID.randomUUID().toString(), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), Set.of(UUID.randomUUID()));
+        request = new MockHttpServletRequest("GET", "/api/v1/file/download");
+        request.setCookies(new Cookie(COOKIE_NAME, jwtUtils.generateToken(user)));
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public Object authenticate() throws ServletException, IOException {
+        filter.doFilter(request, response, chain);
+        final Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,177 @@
+package de.unibremen.swt.see.manager.benchmark;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Compares the ways of sending stored files to clients.
+ * <p>
+ * The file is sent over a loopback TCP connection, which is drained by a
+ * separate thread. {@link #resource} copies the content through heap buffers
+ * like Spring's {@code Resource} handling does, while {@link #transferTo} uses
+ * {@link FileChannel#transferTo}, which is backed by {@code sendfile} on Linux.
+ * <p>
+ * The target is a socket channel, which corresponds to files handed over to
+ * Tomcat's {@code sendfile} support by {@code FileResponseWriter}. The
+ * fallback of {@code FileResponseWriter} writes to the servlet output stream
+ * instead, so that it performs like {@link #resource}.
+ * <p>
+ * Besides the throughput, the CPU time of the sending thread (user and system)
+ * and the number of bytes sent are reported as {@code cpuNanos} and
+ * {@code bytes}. The CPU time per GB is {@code cpuNanos / bytes}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDownloadBenchmark {
+
+    /**
+     * Size of the sent file in bytes.
+     */
+    @Param({"1048576", "67108864"})
+    private int size;
+
+    private Path file;
+
+    private ServerSocketChannel server;
+
+    private SocketChannel client;
+
+    private Thread drain;
+
+    /**
+     * CPU time of the sending thread and number of bytes sent.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        public long cpuNanos;
+
+        public long bytes;
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cpuNanos = 0;
+            bytes = 0;
+        }
+
+        void begin() {
+            start = THREADS.getCurrentThreadCpuTime();
+        }
+
+        void end(long sent) {
+            cpuNanos += THREADS.getCurrentThreadCpuTime() - start;
+            bytes += sent;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("see-benchmark-", ".bin");
+        final byte[] content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        Files.write(file, content);
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        final SocketChannel receiver = server.accept();
+        drain = new Thread(() -> {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            try (receiver) {
+                while (receiver.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // connection closed
+            }
+        }, "benchmark-drain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        client.close();
+        drain.join();
+        server.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Sends the file through a {@link FileSystemResource} stream.
+     *
+     * @param counters the CPU time and byte counters
+     * @throws IOException if the file cannot be sent
+     */
+    @Benchmark
+    public void resource(Counters counters) throws IOException {
+        counters.begin();
+        final OutputStream out = client.socket().getOutputStream();
+        final int sent;
+        try (InputStream in = new FileSystemResource(file).getInputStream()) {
+            sent = StreamUtils.copy(in, out);
+        }
+        counters.end(sent);
+    }
+
+    /**
+     * Sends the file with {@link FileChannel#transferTo}.
+     *
+     * @param counters the CPU time and byte counters
+     * @throws IOException if the file cannot be sent
+     */
+    @Benchmark
+    public void transferTo(Counters counters) throws IOException {
+        counters.begin();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                final long transferred = channel.transferTo(position, size - position, client);
+                if (transferred <= 0) {
+                    throw new EOFException();
+                }
+                position += transferred;
+            }
+        }
+        counters.end(size);
+    }
+}
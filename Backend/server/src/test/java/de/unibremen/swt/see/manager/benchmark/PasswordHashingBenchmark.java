@@ -0,0 +1,91 @@
+package de.unibremen.swt.see.manager.benchmark;
+
+import de.unibremen.swt.see.manager.security.BCryptStrengthCalibrator;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+/**
+ * Measures the latency of a sign-in for each password hashing setting.
+ * <p>
+ * The sign-in is done by a {@link DaoAuthenticationProvider} like in the
+ * application, but with users kept in memory, so that the cost is dominated
+ * by verifying the password. The setting {@code bcrypt-N} uses BCrypt with
+ * strength {@code N}, {@code bcrypt-calibrated} uses the strength chosen by
+ * {@link BCryptStrengthCalibrator} for the default target of 250 ms, and
+ * {@code sha256} uses the encoder for machine credentials.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final long CALIBRATION_TARGET_MS = 250;
+
+    private static final String USERNAME = "user";
+
+    private static final String PASSWORD = UUID.randomUUID().toString();
+
+    /**
+     * Password hashing setting used for the stored password.
+     */
+    @Param({"bcrypt-10", "bcrypt-11", "bcrypt-12", "bcrypt-13", "bcrypt-14", "bcrypt-calibrated", "sha256"})
+    private String setting;
+
+    private DaoAuthenticationProvider provider;
+
+    @Setup
+    public void setUp() {
+        final String id;
+        final int strength;
+        if (setting.equals(Sha256PasswordEncoder.ID)) {
+            id = Sha256PasswordEncoder.ID;
+            strength = BCryptStrengthCalibrator.MIN_STRENGTH;
+        } else if (setting.equals("bcrypt-calibrated")) {
+            id = "bcrypt";
+            strength = BCryptStrengthCalibrator.calibrate(CALIBRATION_TARGET_MS);
+        } else {
+            id = "bcrypt";
+            strength = Integer.parseInt(setting.substring("bcrypt-".length()));
+        }
+        final DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(id, Map.of(
+                "bcrypt", new BCryptPasswordEncoder(BCryptPasswordEncoder.BCryptVersion.$2B, strength),
+                Sha256PasswordEncoder.ID, new Sha256PasswordEncoder()));
+
+        final InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(User.withUsername(USERNAME)
+                .password(encoder.encode(PASSWORD))
+                .authorities(List.of(new SimpleGrantedAuthority("ROLE_USER")))
+                .build());
+        provider = new DaoAuthenticationProvider(users);
+        provider.setPasswordEncoder(encoder);
+    }
+
+    @Benchmark
+    public Authentication signIn() {
+        return provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, PASSWORD));
+    }
+}
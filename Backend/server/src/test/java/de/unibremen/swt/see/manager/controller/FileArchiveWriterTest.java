@@ -0,0 +1,66 @@
+package de.unibremen.swt.see.manager.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.ProjectType;
+import de.unibremen.swt.see.manager.service.FileService;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Verifies that archive entries stay within their project type directory and
+ * have unique names.
+ */
+class FileArchiveWriterTest {
+
+    @Test
+    void entryNamesAreSanitizedAndUnique() throws Exception {
+        final FileService fileService = mock(FileService.class);
+        when(fileService.openContent(any())).thenAnswer(invocation -> new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        final FileArchiveWriter writer = new FileArchiveWriter(fileService);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write("archive", List.of(
+                file("../../etc/passwd"),
+                file("..\\evil.txt"),
+                file("notes.txt"),
+                file("NOTES.txt"),
+                file("sub/notes.txt"),
+                file("..")), response);
+
+        final List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        final String directory = ProjectType.values()[0] + "/";
+        assertEquals(directory + "passwd", names.get(0));
+        assertEquals(directory + "evil.txt", names.get(1));
+        assertEquals(directory + "notes.txt", names.get(2));
+        assertEquals(directory + "NOTES (1).txt", names.get(3));
+        assertEquals(directory + "notes (2).txt", names.get(4));
+        assertEquals(6, names.size());
+        assertEquals(directory.length() + 36, names.get(5).length());
+    }
+
+    private static File file(String name) {
+        final File file = new File();
+        ReflectionTestUtils.setField(file, "id", UUID.randomUUID());
+        file.setName(name);
+        file.setProjectType(ProjectType.values()[0]);
+        file.setSize(3L);
+        return file;
+    }
+}
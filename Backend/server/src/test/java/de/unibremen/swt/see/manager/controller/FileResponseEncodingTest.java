@@ -0,0 +1,128 @@
+package de.unibremen.swt.see.manager.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.security.JwtUtils;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
+import de.unibremen.swt.see.manager.service.ContainerService;
+import de.unibremen.swt.see.manager.service.ServerService;
+import jakarta.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Verifies that files stored compressed are sent as they are to clients
+ * accepting the content coding, and decompressed for other clients.
+ */
+@SpringBootTest(properties = {
+    "see.app.filestorage.dir=target/file-response-encoding-test",
+    "see.app.filestorage.codec=gzip"
+})
+@AutoConfigureMockMvc
+class FileResponseEncodingTest {
+
+    private static final byte[] CONTENT = "<gxl/>".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    private File file;
+
+    private Cookie cookie;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Server newServer = new Server();
+        newServer.setName("test");
+        final Server server = serverService.create(newServer);
+        file = serverService.addFile(server.getId(), "SEECity", "test.gxl", "text/plain",
+                new ByteArrayInputStream(CONTENT));
+        assertEquals("gzip", file.getEncoding());
+
+        final ResponseCookie jwtCookie = jwtUtils.generateJwtCookie(userDetailsCache.get(server.getId().toString()));
+        cookie = new Cookie(jwtCookie.getName(), jwtCookie.getValue());
+    }
+
+    @Test
+    void gzipIsSentAsItIs() throws Exception {
+        assertEncoded(download("gzip, deflate"));
+    }
+
+    @Test
+    void xGzipIsSentAsGzip() throws Exception {
+        assertEncoded(download("x-gzip"));
+    }
+
+    @Test
+    void wildcardAcceptsGzip() throws Exception {
+        assertEncoded(download("*"));
+    }
+
+    @Test
+    void zeroQualityRejectsGzip() throws Exception {
+        assertDecoded(download("gzip;q=0"));
+        assertDecoded(download("*, gzip;q=0"));
+    }
+
+    @Test
+    void missingHeaderRejectsGzip() throws Exception {
+        assertDecoded(download(null));
+    }
+
+    private void assertEncoded(MockHttpServletResponse response) throws Exception {
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"" + file.getDigest() + "-gzip\"", response.getHeader(HttpHeaders.ETAG));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertArrayEquals(CONTENT, in.readAllBytes());
+        }
+    }
+
+    private void assertDecoded(MockHttpServletResponse response) {
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertEquals("none", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"" + file.getDigest() + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse download(String acceptEncoding) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/v1/file/download").param("id", file.getId().toString());
+        if (acceptEncoding != null) {
+            request = request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return mockMvc.perform(request.cookie(cookie)).andReturn().getResponse();
+    }
+}
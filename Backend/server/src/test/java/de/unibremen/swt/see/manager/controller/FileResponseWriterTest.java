@@ -0,0 +1,172 @@
+package de.unibremen.swt.see.manager.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.security.JwtUtils;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
+import de.unibremen.swt.see.manager.service.ContainerService;
+import de.unibremen.swt.see.manager.service.ServerService;
+import jakarta.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Verifies the byte range handling of file downloads.
+ * <p>
+ * The file cache is disabled so that the parts are read from the file system.
+ */
+@SpringBootTest(properties = {
+    "see.app.filestorage.dir=target/file-response-writer-test",
+    "see.app.filecache.max-bytes=0"
+})
+@AutoConfigureMockMvc
+class FileResponseWriterTest {
+
+    private static final byte[] CONTENT = new byte[100];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) i;
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    private File file;
+
+    private Cookie cookie;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Server newServer = new Server();
+        newServer.setName("test");
+        final Server server = serverService.create(newServer);
+        file = serverService.addFile(server.getId(), "SEECity", "test.bin", "application/octet-stream",
+                new ByteArrayInputStream(CONTENT));
+
+        final ResponseCookie jwtCookie = jwtUtils.generateJwtCookie(userDetailsCache.get(server.getId().toString()));
+        cookie = new Cookie(jwtCookie.getName(), jwtCookie.getValue());
+    }
+
+    @Test
+    void singleRangeIsSentAsPartialContent() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download").header(HttpHeaders.RANGE, "bytes=10-19"));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.getContentLength());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 10, 20), response.getContentAsByteArray());
+    }
+
+    @Test
+    void suffixRangeIsSentFromEndOfFile() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download").header(HttpHeaders.RANGE, "bytes=-5"));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 95-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 95, 100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void multipleRangesAreSentAsMultipart() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download").header(HttpHeaders.RANGE, "bytes=0-1,50-51"));
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        final String boundary = response.getContentType().substring(response.getContentType().indexOf('=') + 1);
+
+        final String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        final String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 0-1/100\r\n\r\n"
+                + "\u0000\u0001"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 50-51/100\r\n\r\n"
+                + "23"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, body);
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download").header(HttpHeaders.RANGE, "bytes=200-300"));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rangeIsSentIfETagMatches() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download")
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, FileResponseWriter.getETag(file)));
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void fullContentIsSentIfETagDoesNotMatch() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download")
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, "\"outdated\""));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangeIsSentIfDateMatches() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download")
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, httpDate(0)));
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void fullContentIsSentIfDateDoesNotMatch() throws Exception {
+        final MockHttpServletResponse response = download(get("/api/v1/file/download")
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, httpDate(-60)));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    private String httpDate(long offsetSeconds) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                file.getCreationTime().withZoneSameInstant(ZoneOffset.UTC).plusSeconds(offsetSeconds));
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.param("id", file.getId().toString()).cookie(cookie))
+                .andReturn().getResponse();
+    }
+}
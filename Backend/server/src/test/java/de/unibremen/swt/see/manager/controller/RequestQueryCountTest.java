@@ -0,0 +1,135 @@
+package de.unibremen.swt.see.manager.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.model.User;
+import de.unibremen.swt.see.manager.security.JwtUtils;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
+import de.unibremen.swt.see.manager.security.UserDetailsImpl;
+import de.unibremen.swt.see.manager.security.UserDetailsServiceImpl;
+import de.unibremen.swt.see.manager.service.AccessControlService;
+import de.unibremen.swt.see.manager.service.ContainerService;
+import de.unibremen.swt.see.manager.service.ServerService;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseCookie;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+/**
+ * Verifies the number of SQL statements executed per request.
+ * <p>
+ * The persistence context is not kept open for the whole request, and the
+ * servers of files are not cached, so that entities looked up both during
+ * access control and by the controller are only loaded once because of the
+ * request-scoped entity cache. Access control only selects the server ID of a
+ * file, which takes a separate statement, but does not load the file. Access
+ * to the server is checked with a single {@code EXISTS} query, as the servers
+ * of the user are not loaded with the user details.
+ */
+@SpringBootTest(properties = {
+    "see.app.filestorage.dir=target/request-query-count-test",
+    "see.app.accesscache.max-size=0",
+    "spring.jpa.open-in-view=false",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+class RequestQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private AccessControlService accessControlService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    private Statistics statistics;
+
+    private Server server;
+
+    private File file;
+
+    private Cookie cookie;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Server newServer = new Server();
+        newServer.setName("test");
+        server = serverService.create(newServer);
+        file = serverService.addFile(server.getId(), "SEECity", "test.gxl", "text/plain",
+                new ByteArrayInputStream("<gxl/>".getBytes(StandardCharsets.UTF_8)));
+
+        // Loads the user details into the cache, as done on the first request
+        final ResponseCookie jwtCookie = jwtUtils.generateJwtCookie(userDetailsCache.get(server.getId().toString()));
+        cookie = new Cookie(jwtCookie.getName(), jwtCookie.getValue());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getFileLoadsFileOnce() throws Exception {
+        perform(get("/api/v1/file/get").param("id", file.getId().toString()));
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityStatistics(File.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void downloadFileLoadsFileOnce() throws Exception {
+        perform(get("/api/v1/file/download").param("id", file.getId().toString()));
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityStatistics(File.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void getServerLoadsServerOnce() throws Exception {
+        perform(get("/api/v1/server/").param("id", server.getId().toString()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void serverAccessIsCheckedWithOneQuery() throws Exception {
+        final UserDetailsImpl principal = (UserDetailsImpl) userDetailsService.loadUserByUsername(server.getId().toString());
+        assertEquals(0, statistics.getCollectionStatistics(User.class.getName() + ".servers").getFetchCount());
+
+        statistics.clear();
+        assertTrue(accessControlService.canAccessServer(principal, server.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private void perform(MockHttpServletRequestBuilder request) throws Exception {
+        mockMvc.perform(request.cookie(cookie)).andExpect(status().isOk());
+    }
+}
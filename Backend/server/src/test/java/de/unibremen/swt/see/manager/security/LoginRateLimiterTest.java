@@ -0,0 +1,33 @@
+package de.unibremen.swt.see.manager.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies that exempt addresses are only subject to the limit per username.
+ */
+class LoginRateLimiterTest {
+
+    @Test
+    void exemptAddressesAreOnlyLimitedPerUsername() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final LoginRateLimiter limiter = new LoginRateLimiter(1, 1, List.of("10.1.0.0/16", " 192.0.2.10"),
+                2, 1, meterRegistry);
+
+        limiter.acquire("10.1.2.3", "alice");
+        limiter.acquire("10.1.2.3", "bob");
+        limiter.acquire("192.0.2.10", "carol");
+        limiter.acquire("192.0.2.10", "dave");
+        limiter.acquire("10.2.0.1", "erin");
+        assertThrows(LoginRateLimitedException.class, () -> limiter.acquire("10.2.0.1", "frank"));
+
+        limiter.acquire("10.1.2.3", "alice");
+        assertThrows(LoginRateLimitedException.class, () -> limiter.acquire("10.1.2.3", "alice"));
+        assertEquals(1, meterRegistry.counter("login.rate.limited", "key", "address").count());
+        assertEquals(1, meterRegistry.counter("login.rate.limited", "key", "username").count());
+    }
+}
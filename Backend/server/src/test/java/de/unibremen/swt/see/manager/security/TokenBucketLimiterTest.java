@@ -0,0 +1,53 @@
+package de.unibremen.swt.see.manager.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies the refill of token buckets and the computed retry delays.
+ */
+class TokenBucketLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void burstIsLimitedAndRefilled() {
+        // 2 attempts in a burst, one attempt regained every 10 seconds
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(2, 6, 100, now::get);
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(10, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("b"), "Keys must not share a bucket");
+
+        advance(4);
+        assertEquals(6, limiter.tryAcquire("a"));
+        advance(6);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(10, limiter.tryAcquire("a"));
+
+        // The bucket is never refilled above its capacity
+        advance(3600);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(10, limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToFullSeconds() {
+        // One attempt regained every 0.1 seconds
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(1, 600, 100, now::get);
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(1, limiter.tryAcquire("a"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, limiter.tryAcquire("a"));
+    }
+
+    private void advance(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
@@ -0,0 +1,144 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Verifies that identical contents share a blob, and that blobs are deleted
+ * once they are no longer referenced.
+ * <p>
+ * The persisted references are simulated by a counter, other instances by a
+ * mocked lease service.
+ */
+class BlobStoreTest {
+
+    private static final String DIGEST = "0123456789abcdef";
+
+    @TempDir
+    private Path root;
+
+    private BlobStore blobStore;
+
+    private final AtomicLong references = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new BlobStore();
+        ReflectionTestUtils.setField(blobStore, "fileStorageRoot", root.toString());
+        ReflectionTestUtils.setField(blobStore, "instanceId", "");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void identicalContentsShareBlob() throws Exception {
+        final Path first = stage();
+        final Path second = stage();
+
+        final Path blob = blobStore.store(first, DIGEST, references::get);
+        assertEquals(blob, blobStore.store(second, DIGEST, references::get));
+
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertEquals("content", Files.readString(blob));
+    }
+
+    @Test
+    void blobIsDeletedWithLastReference() throws Exception {
+        final Path blob = blobStore.store(stage(), DIGEST, references::get);
+        blobStore.store(stage(), DIGEST, references::get);
+        references.set(2);
+
+        references.decrementAndGet();
+        blobStore.release(DIGEST, references::get);
+        assertTrue(Files.exists(blob));
+
+        references.decrementAndGet();
+        blobStore.release(DIGEST, references::get);
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    void rolledBackBlobIsDeleted() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        final Path blob = blobStore.store(stage(), DIGEST, references::get);
+        final List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // The pending reference protects the blob until the transaction is completed
+        blobStore.release(DIGEST, references::get);
+        assertTrue(Files.exists(blob));
+
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    void leaseIsHeldUntilTransactionCompletes() throws Exception {
+        final LeaseService leaseService = leaseService(7L);
+        final BlobStore clusterStore = clusterStore(leaseService);
+
+        TransactionSynchronizationManager.initSynchronization();
+        clusterStore.store(stage(), DIGEST, references::get);
+        verify(leaseService, never()).release(any(), anyLong());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        verify(leaseService).release("blob:" + DIGEST, 7L);
+    }
+
+    @Test
+    void blobLeasedByOtherInstanceIsKept() throws Exception {
+        final Path blob = blobStore.store(stage(), DIGEST, references::get);
+        final BlobStore clusterStore = clusterStore(leaseService(null));
+
+        clusterStore.release(DIGEST, references::get);
+        assertTrue(Files.exists(blob));
+        assertThrows(IOException.class, () -> clusterStore.store(stage(), DIGEST, references::get));
+    }
+
+    private BlobStore clusterStore(LeaseService leaseService) {
+        final BlobStore clusterStore = new BlobStore(leaseService, 100);
+        ReflectionTestUtils.setField(clusterStore, "fileStorageRoot", root.toString());
+        ReflectionTestUtils.setField(clusterStore, "instanceId", "");
+        return clusterStore;
+    }
+
+    private static LeaseService leaseService(Long token) {
+        final LeaseService leaseService = mock(LeaseService.class);
+        when(leaseService.isEnabled()).thenReturn(true);
+        when(leaseService.tryAcquire(any(), any())).thenReturn(token);
+        return leaseService;
+    }
+
+    private Path stage() throws Exception {
+        return Files.writeString(blobStore.createStagingFile(), "content", StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,258 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.repository.LeaseRepository;
+import de.unibremen.swt.see.manager.repository.RevocationRepository;
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.security.TokenRevocationList;
+import de.unibremen.swt.see.manager.util.ServerLockManager;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Verifies the coordination of multiple back-end instances using leases.
+ * <p>
+ * Replicas are simulated in-process by separate lease services with distinct
+ * instance IDs that share the database of the application context.
+ * <p>
+ * Concurrent attempts to acquire a lease contend for the table lock of the
+ * shared in-memory database, which fails immediately instead of waiting like
+ * a database file. These failures count as held lease, so the SQL errors
+ * logged by Hibernate are expected and suppressed.
+ */
+@SpringBootTest(properties = {
+    "see.app.filestorage.dir=target/cluster-coordination-test",
+    "see.app.cluster.enabled=true",
+    "see.app.cluster.instance-id=application",
+    "see.app.cluster.leader.heartbeat-ms=3600000",
+    "logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper=OFF"
+})
+class ClusterCoordinationTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    @Autowired
+    private LeaseRepository leaseRepo;
+
+    @Autowired
+    private ServerRepository serverRepo;
+
+    @Autowired
+    private RevocationRepository revocationRepo;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private LeaderElection applicationLeader;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    private LeaseService replicaA;
+
+    private LeaseService replicaB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Scheduled tasks run at startup compete for the database; the
+        // scheduler runs them one after another
+        taskScheduler.schedule(() -> { }, Instant.now()).get(10, TimeUnit.SECONDS);
+        replicaA = new LeaseService(leaseRepo, transactionManager, true, "replica-a");
+        replicaB = new LeaseService(leaseRepo, transactionManager, true, "replica-b");
+    }
+
+    @Test
+    void leaseIsExclusiveAcrossReplicas() {
+        final String name = "test:" + UUID.randomUUID();
+
+        final Long token = replicaA.tryAcquire(name, TTL);
+        assertNotNull(token);
+        assertNull(replicaB.tryAcquire(name, TTL));
+        assertNull(replicaA.tryAcquire(name, TTL), "Leases must not be reentrant");
+
+        replicaA.release(name, token);
+        assertEquals(token + 1, replicaB.tryAcquire(name, TTL));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverWithHigherFencingToken() throws Exception {
+        final String name = "test:" + UUID.randomUUID();
+
+        final Long expired = replicaA.tryAcquire(name, Duration.ofMillis(50));
+        assertNotNull(expired);
+        Thread.sleep(100);
+
+        final Long current = replicaB.tryAcquire(name, TTL);
+        assertEquals(expired + 1, current);
+        assertFalse(replicaA.renew(name, expired, TTL));
+
+        replicaA.release(name, expired);
+        assertNull(replicaA.tryAcquire(name, TTL), "An outdated holder must not release the lease");
+        assertTrue(replicaB.renew(name, current, TTL));
+    }
+
+    @Test
+    void onlyOneReplicaIsLeader() throws Exception {
+        applicationLeader.resign();
+        final List<Object> electionsA = new ArrayList<>();
+        final List<Object> electionsB = new ArrayList<>();
+        final LeaderElection leaderA = new LeaderElection(replicaA, electionsA::add, 300);
+        final LeaderElection leaderB = new LeaderElection(replicaB, electionsB::add, 300);
+
+        leaderA.heartbeat();
+        leaderB.heartbeat();
+        assertTrue(leaderA.isLeader());
+        assertFalse(leaderB.isLeader());
+
+        // Replica A stops sending heartbeats, e.g., because it crashed
+        Thread.sleep(400);
+        assertFalse(leaderA.isLeader());
+        leaderB.heartbeat();
+        assertTrue(leaderB.isLeader());
+        leaderA.heartbeat();
+        assertFalse(leaderA.isLeader());
+
+        leaderB.resign();
+        leaderA.heartbeat();
+        assertTrue(leaderA.isLeader());
+        assertFalse(leaderB.isLeader());
+        leaderA.resign();
+
+        // Renewals do not count as elections
+        assertEquals(2, electionsA.size());
+        assertEquals(List.of(new LeaderElection.Elected(replicaB.getInstanceId())), electionsB);
+    }
+
+    @Test
+    void serverLocksAreExclusiveAcrossReplicas() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final ServerLockManager[] replicas = {
+            new ServerLockManager(new SimpleMeterRegistry(), replicaA, TTL.toMillis()),
+            new ServerLockManager(new SimpleMeterRegistry(), replicaB, TTL.toMillis())
+        };
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final ServerLockManager lockManager = replicas[t % 2];
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10; i++) {
+                    try (ServerLockManager.ServerLock lock = lockManager.tryLock(id, 30, TimeUnit.SECONDS)) {
+                        assertNotNull(lock);
+                        assertNotNull(lock.getFencingToken());
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        Thread.sleep(1);
+                        running.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(80, completed.get());
+        assertEquals(0, overlaps.get(), "Operations of different replicas on the same server overlapped");
+    }
+
+    @Test
+    void outdatedLeaseHolderCannotModifyServer() throws Exception {
+        final Server newServer = new Server();
+        newServer.setName("test");
+        final UUID id = serverService.create(newServer).getId();
+        final ServerLockManager lockManagerA =
+                new ServerLockManager(new SimpleMeterRegistry(), replicaA, 50);
+        final ServerLockManager lockManagerB =
+                new ServerLockManager(new SimpleMeterRegistry(), replicaB, TTL.toMillis());
+        final TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        try (ServerLockManager.ServerLock outdated = lockManagerA.tryLock(id, 0, TimeUnit.SECONDS)) {
+            assertNotNull(outdated);
+            Thread.sleep(100);
+            try (ServerLockManager.ServerLock current = lockManagerB.tryLock(id, 0, TimeUnit.SECONDS)) {
+                assertNotNull(current);
+                assertTrue(current.getFencingToken() > outdated.getFencingToken());
+                final Integer fencedCurrent = transaction.execute(status -> serverRepo.fence(id, current.getFencingToken()));
+                final Integer fencedOutdated = transaction.execute(status -> serverRepo.fence(id, outdated.getFencingToken()));
+                assertEquals(1, fencedCurrent);
+                assertEquals(0, fencedOutdated, "Modifications with an outdated fencing token must be rejected");
+            }
+        }
+    }
+
+    @Test
+    void serverLeaseIsReleasedAfterOperationCommitted() throws Exception {
+        final Server newServer = new Server();
+        newServer.setName("test");
+        final UUID id = serverService.create(newServer).getId();
+
+        serverService.start(id);
+
+        final Long fencingToken = serverRepo.findById(id).orElseThrow().getFencingToken();
+        assertNotNull(fencingToken);
+        assertEquals(fencingToken + 1, replicaB.tryAcquire("server:" + id, TTL));
+    }
+
+    @Test
+    void revokedTokenIsRejectedByAllReplicas() {
+        final TokenRevocationList replicaRevocationList =
+                new TokenRevocationList(TTL.toMillis(), false, true, revocationRepo);
+        final Claims claims = Jwts.claims()
+                .id(UUID.randomUUID().toString())
+                .subject("test")
+                .expiration(new Date(System.currentTimeMillis() + TTL.toMillis()))
+                .build();
+        assertFalse(revocationList.isRevoked(claims));
+
+        replicaRevocationList.revokeToken(claims);
+        assertTrue(revocationList.isRevoked(claims), "Revocations must be shared with all replicas");
+    }
+}
@@ -0,0 +1,118 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventActor;
+import com.github.dockerjava.api.model.EventType;
+import de.unibremen.swt.see.manager.model.ServerStatusType;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies that container events update the server status and that the
+ * subscription is renewed after the event stream drops.
+ */
+class ContainerEventListenerTest {
+
+    private final BlockingQueue<ResultCallback<Event>> subscriptions = new LinkedBlockingQueue<>();
+
+    private ContainerService containerService;
+
+    private ServerService serverService;
+
+    private LeaderElection leaderElection;
+
+    private ContainerEventListener listener;
+
+    @BeforeEach
+    void setUp() {
+        containerService = mock(ContainerService.class);
+        when(containerService.subscribeEvents(any(), any())).thenAnswer(invocation -> {
+            subscriptions.add(invocation.getArgument(1));
+            return invocation.getArgument(1);
+        });
+        serverService = mock(ServerService.class);
+        leaderElection = mock(LeaderElection.class);
+        when(leaderElection.isLeader()).thenReturn(true);
+        listener = new ContainerEventListener(containerService, serverService, leaderElection, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void eventsUpdateServerStatus() throws Exception {
+        listener.start();
+        final ResultCallback<Event> callback = subscriptions.poll(5, TimeUnit.SECONDS);
+        final UUID serverId = UUID.randomUUID();
+
+        callback.onNext(event("start", "see-" + serverId, 100));
+        verify(serverService).updateStatus(serverId, ServerStatusType.ONLINE);
+        callback.onNext(event("die", "see-" + serverId, 101));
+        verify(serverService).updateStatus(serverId, ServerStatusType.OFFLINE);
+
+        final UUID labeledId = UUID.randomUUID();
+        callback.onNext(event("die", Map.of("name", "renamed", ContainerService.SERVER_ID_LABEL, labeledId.toString()), 102));
+        verify(serverService).updateStatus(labeledId, ServerStatusType.OFFLINE);
+
+        // A signal does not necessarily terminate the container
+        callback.onNext(event("kill", "see-" + serverId, 102));
+        callback.onNext(event("start", "unrelated", 102));
+        callback.onNext(event("start", "see-no-uuid", 103));
+        when(leaderElection.isLeader()).thenReturn(false);
+        callback.onNext(event("destroy", "see-" + serverId, 104));
+        verifyNoMoreInteractions(serverService);
+    }
+
+    @Test
+    void electionUpdatesAllServerStatus() {
+        listener.reconcile(new LeaderElection.Elected("instance"));
+        verify(serverService, timeout(5000)).updateStatus();
+    }
+
+    @Test
+    void subscriptionIsRenewedAfterStreamDropped() throws Exception {
+        listener.start();
+        final ResultCallback<Event> first = subscriptions.poll(5, TimeUnit.SECONDS);
+        verify(containerService).subscribeEvents(isNull(), any());
+
+        first.onNext(event("start", "see-" + UUID.randomUUID(), 1234));
+        first.onError(new IOException("Connection reset"));
+
+        final ResultCallback<Event> second = subscriptions.poll(5, TimeUnit.SECONDS);
+        verify(containerService).subscribeEvents(eq(1234L), any());
+
+        second.onComplete();
+        verify(containerService, timeout(10_000).times(2)).subscribeEvents(eq(1234L), any());
+    }
+
+    private static Event event(String action, String containerName, long time) {
+        return event(action, Map.of("name", containerName), time);
+    }
+
+    private static Event event(String action, Map<String, String> attributes, long time) {
+        return new Event()
+                .withType(EventType.CONTAINER)
+                .withAction(action)
+                .withTime(time)
+                .withEventActor(new EventActor().withAttributes(attributes));
+    }
+}
@@ -0,0 +1,75 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.repository.UserRepository;
+import de.unibremen.swt.see.manager.security.Sha256PasswordEncoder;
+import de.unibremen.swt.see.manager.security.UserDetailsCache;
+import de.unibremen.swt.see.manager.security.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Verifies which password hashes are upgraded after sign-in.
+ */
+class PasswordUpgradeServiceTest {
+
+    private static final String PASSWORD = "password";
+
+    private final PasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of(
+            "bcrypt", new BCryptPasswordEncoder(4),
+            Sha256PasswordEncoder.ID, new Sha256PasswordEncoder()));
+
+    private final UserRepository userRepo = mock(UserRepository.class);
+
+    private final ServerRepository serverRepo = mock(ServerRepository.class);
+
+    private PasswordUpgradeService upgradeService;
+
+    @BeforeEach
+    void setUp() {
+        upgradeService = new PasswordUpgradeService(passwordEncoder, userRepo, serverRepo,
+                mock(UserDetailsCache.class), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void serverAccountIsRehashedAsMachineCredential() {
+        final UUID serverId = UUID.randomUUID();
+        when(serverRepo.existsById(serverId)).thenReturn(true);
+        final UserDetailsImpl userDetails = userDetails(serverId.toString(), passwordEncoder.encode(PASSWORD));
+
+        upgradeService.upgradeIfOutdated(userDetails, PASSWORD);
+
+        verify(userRepo, timeout(5000)).replacePassword(eq(userDetails.getId()), eq(userDetails.getPassword()),
+                startsWith("{" + Sha256PasswordEncoder.ID + "}"));
+    }
+
+    @Test
+    void currentUserPasswordIsKept() {
+        final UserDetailsImpl userDetails = userDetails("user", passwordEncoder.encode(PASSWORD));
+
+        // Upgrades are only scheduled if the hash is outdated
+        upgradeService.upgradeIfOutdated(userDetails, PASSWORD);
+        verify(userRepo, never()).replacePassword(any(), any(), any());
+    }
+
+    private static UserDetailsImpl userDetails(String username, String encodedPassword) {
+        return new UserDetailsImpl(UUID.randomUUID(), username, encodedPassword, List.of(), Set.of());
+    }
+}
@@ -0,0 +1,113 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.unibremen.swt.see.manager.model.User;
+import de.unibremen.swt.see.manager.repository.RefreshTokenRepository;
+import de.unibremen.swt.see.manager.repository.UserRepository;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Verifies the rotation of refresh tokens, including the detection of reused
+ * tokens and the grace period for concurrent requests.
+ */
+@SpringBootTest(properties = {
+    "see.app.filestorage.dir=target/refresh-token-service-test",
+    "see.app.jwtRefreshGracePeriodMs=60000"
+})
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepo;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepo.save(new User(UUID.randomUUID().toString(), "unused"));
+    }
+
+    @Test
+    void tokenIsRotated() {
+        final String first = refreshTokenService.issue(user.getId());
+
+        final RefreshTokenService.Rotation rotation = refreshTokenService.rotate(first);
+        assertNotNull(rotation);
+        assertEquals(user.getId(), rotation.user().getId());
+        assertNotEquals(first, rotation.token());
+        assertNotNull(refreshTokenService.rotate(rotation.token()));
+        assertNull(refreshTokenService.rotate("unknown"));
+    }
+
+    @Test
+    void reusedTokenRevokesFamily() {
+        final RefreshTokenService withoutGracePeriod =
+                new RefreshTokenService(refreshTokenRepo, userRepo, 60000, 0);
+        final String first = inTransaction(() -> withoutGracePeriod.issue(user.getId()));
+        final String second = inTransaction(() -> withoutGracePeriod.rotate(first).token());
+
+        assertNull(inTransaction(() -> withoutGracePeriod.rotate(first)));
+        assertNull(inTransaction(() -> withoutGracePeriod.rotate(second)), "Tokens of a reused family must be revoked");
+    }
+
+    @Test
+    void mostRecentlyUsedTokenIsAcceptedWithinGracePeriod() {
+        final String first = refreshTokenService.issue(user.getId());
+        final String second = refreshTokenService.rotate(first).token();
+
+        // A concurrent request of another tab used the same token
+        final RefreshTokenService.Rotation concurrent = refreshTokenService.rotate(first);
+        assertNotNull(concurrent);
+        assertNotNull(refreshTokenService.rotate(second), "Grace period must not revoke the family");
+        assertNotNull(refreshTokenService.rotate(concurrent.token()));
+    }
+
+    @Test
+    void olderTokenIsRejectedWithinGracePeriod() {
+        final String first = refreshTokenService.issue(user.getId());
+        final String second = refreshTokenService.rotate(first).token();
+        final String third = refreshTokenService.rotate(second).token();
+
+        assertNull(refreshTokenService.rotate(first));
+        assertNull(refreshTokenService.rotate(third), "Tokens of a reused family must be revoked");
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        final RefreshTokenService shortLived = new RefreshTokenService(refreshTokenRepo, userRepo, 1, 60000);
+        final String token = inTransaction(() -> shortLived.issue(user.getId()));
+        Thread.sleep(10);
+
+        assertNull(inTransaction(() -> shortLived.rotate(token)));
+        assertTrue(refreshTokenRepo.findAll().stream().noneMatch(t -> t.getUser().getId().equals(user.getId())),
+                "Expired tokens must be deleted");
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+}
@@ -0,0 +1,78 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.model.ServerOperation;
+import de.unibremen.swt.see.manager.repository.ServerOperationRepository;
+import jakarta.persistence.EntityNotFoundException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Verifies that the progress of server operations is stored in the database,
+ * so that it can be polled from any instance.
+ */
+@SpringBootTest(properties = "see.app.filestorage.dir=target/server-operation-service-test")
+class ServerOperationServiceTest {
+
+    @Autowired
+    private ServerOperationService serverOperationService;
+
+    @Autowired
+    private ServerOperationRepository operationRepo;
+
+    @Autowired
+    private ServerService serverService;
+
+    @MockitoBean
+    private ContainerService containerService;
+
+    @Test
+    void operationProgressIsStored() throws Exception {
+        final Server newServer = new Server();
+        newServer.setName("test");
+        final UUID serverId = serverService.create(newServer).getId();
+
+        final UUID id = serverOperationService.submit(serverId, ServerOperation.Type.START).getId();
+        ServerOperation operation = serverOperationService.get(id);
+        for (int i = 0; i < 100 && !operation.isFinished(); i++) {
+            Thread.sleep(100);
+            operation = serverOperationService.get(id);
+        }
+
+        assertEquals(ServerOperation.Status.SUCCEEDED, operation.getStatus());
+        assertTrue(operationRepo.findById(id).orElseThrow().isFinished());
+        assertThrows(EntityNotFoundException.class, () -> serverOperationService.get(UUID.randomUUID()));
+    }
+
+    @Test
+    void abandonedOperationIsMarkedAsFailed() {
+        final ZonedDateTime past = ZonedDateTime.now(ZoneId.of("UTC")).minusDays(1);
+        final ServerOperation abandoned = new ServerOperation(UUID.randomUUID(), ServerOperation.Type.STOP);
+        abandoned.running();
+        ReflectionTestUtils.setField(abandoned, "creationTime", past);
+        final UUID abandonedId = operationRepo.save(abandoned).getId();
+        final ServerOperation completed = new ServerOperation(UUID.randomUUID(), ServerOperation.Type.STOP);
+        completed.finish(null);
+        ReflectionTestUtils.setField(completed, "creationTime", past);
+        ReflectionTestUtils.setField(completed, "finishTime", past);
+        final UUID completedId = operationRepo.save(completed).getId();
+
+        serverOperationService.expireOperations();
+
+        final ServerOperation operation = serverOperationService.get(abandonedId);
+        assertEquals(ServerOperation.Status.FAILED, operation.getStatus());
+        assertEquals(ServerOperationService.ABANDONED_MESSAGE, operation.getMessage());
+        assertFalse(operationRepo.existsById(completedId));
+    }
+}
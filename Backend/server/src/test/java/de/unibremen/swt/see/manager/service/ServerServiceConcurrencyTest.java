@@ -0,0 +1,157 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.repository.ConfigRepository;
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.util.ServerLockManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Stress tests the server locks with many concurrent start, stop, delete, and
+ * status update calls on a small set of servers.
+ * <p>
+ * The container operations are mocked and record how many operations run
+ * concurrently on the same server, which must never exceed one.
+ */
+class ServerServiceConcurrencyTest {
+
+    private static final int SERVERS = 4;
+
+    private static final int THREADS = 32;
+
+    private static final int CALLS_PER_THREAD = 200;
+
+    private final List<UUID> serverIds = new ArrayList<>();
+
+    private final Map<UUID, AtomicInteger> running = new ConcurrentHashMap<>();
+
+    private final AtomicInteger overlaps = new AtomicInteger();
+
+    private ServerLockManager lockManager;
+
+    private ServerService serverService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < SERVERS; i++) {
+            final UUID id = UUID.randomUUID();
+            serverIds.add(id);
+            running.put(id, new AtomicInteger());
+        }
+
+        final ServerRepository serverRepo = mock(ServerRepository.class);
+        when(serverRepo.findById(any())).thenAnswer(invocation -> Optional.of(server(invocation.getArgument(0))));
+
+        final Answer<Void> containerOperation = invocation -> {
+            final Server server = invocation.getArgument(0);
+            final AtomicInteger counter = running.get(server.getId());
+            if (counter.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(100_000));
+            counter.decrementAndGet();
+            return null;
+        };
+        final ContainerService containerService = mock(ContainerService.class);
+        doAnswer(containerOperation).when(containerService).startContainer(any());
+        doAnswer(containerOperation).when(containerService).stopContainer(any());
+        doAnswer(containerOperation).when(containerService).deleteContainer(any());
+        when(containerService.isRunning(any())).thenAnswer(invocation -> ThreadLocalRandom.current().nextBoolean());
+
+        lockManager = new ServerLockManager(new SimpleMeterRegistry());
+        serverService = new ServerService(mock(ConfigRepository.class), serverRepo, mock(FileService.class),
+                containerService, mock(UserService.class), mock(RequestEntityCache.class), lockManager);
+    }
+
+    @Test
+    void concurrentOperationsOnSameServerDoNotOverlap() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    final UUID id = serverIds.get(random.nextInt(SERVERS));
+                    switch (random.nextInt(4)) {
+                        case 0 -> serverService.start(id);
+                        case 1 -> serverService.stop(id);
+                        case 2 -> serverService.delete(id);
+                        default -> serverService.updateStatus(server(id));
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(0, overlaps.get(), "Container operations on the same server overlapped");
+        assertEquals(0, lockManager.size(), "Locks have not been removed after use");
+    }
+
+    @Test
+    void lockIsSharedWithCallersWaitingWhileItIsReleased() throws Exception {
+        final UUID id = serverIds.get(0);
+        final ServerLockManager.ServerLock held = lockManager.tryLock(id, 0, TimeUnit.SECONDS);
+        assertNotNull(held);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<?> waiter = executor.submit(() -> {
+            try (ServerLockManager.ServerLock lock = lockManager.tryLock(id, 10, TimeUnit.SECONDS)) {
+                assertNotNull(lock);
+                acquired.countDown();
+                release.await();
+            }
+            return null;
+        });
+
+        Thread.sleep(100);
+        held.close();
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        assertNull(lockManager.tryLock(id, 0, TimeUnit.SECONDS), "A new lock has been created while held");
+
+        release.countDown();
+        waiter.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(0, lockManager.size());
+    }
+
+    private static Server server(UUID id) {
+        final Server server = new Server();
+        ReflectionTestUtils.setField(server, "id", id);
+        return server;
+    }
+}
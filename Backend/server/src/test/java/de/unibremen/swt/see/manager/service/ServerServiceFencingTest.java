@@ -0,0 +1,51 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.repository.ConfigRepository;
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.util.ServerLockManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Verifies that an instance whose server lease has been taken over does not
+ * touch the container of the server.
+ */
+class ServerServiceFencingTest {
+
+    @Test
+    void outdatedLeaseHolderDoesNotTouchContainer() throws Exception {
+        final Server server = new Server();
+        ReflectionTestUtils.setField(server, "id", UUID.randomUUID());
+        final ServerRepository serverRepo = mock(ServerRepository.class);
+        when(serverRepo.findById(server.getId())).thenReturn(Optional.of(server));
+        when(serverRepo.fence(any(), anyLong())).thenReturn(0);
+
+        final LeaseService leaseService = mock(LeaseService.class);
+        when(leaseService.isEnabled()).thenReturn(true);
+        when(leaseService.tryAcquire(any(), any())).thenReturn(1L);
+
+        final ContainerService containerService = mock(ContainerService.class);
+        final ServerService serverService = new ServerService(mock(ConfigRepository.class), serverRepo,
+                mock(FileService.class), containerService, mock(UserService.class), mock(RequestEntityCache.class),
+                new ServerLockManager(new SimpleMeterRegistry(), leaseService, 60000));
+
+        assertThrows(IllegalStateException.class, () -> serverService.start(server.getId()));
+        assertThrows(IllegalStateException.class, () -> serverService.stop(server.getId()));
+        assertThrows(IllegalStateException.class, () -> serverService.delete(server.getId()));
+        verify(containerService, never()).startContainer(any());
+        verify(containerService, never()).stopContainer(any());
+        verify(containerService, never()).deleteContainer(any());
+    }
+}
@@ -0,0 +1,90 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.model.Server;
+import de.unibremen.swt.see.manager.model.ServerStatusType;
+import de.unibremen.swt.see.manager.repository.ConfigRepository;
+import de.unibremen.swt.see.manager.repository.ServerRepository;
+import de.unibremen.swt.see.manager.util.ServerLockManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Verifies that the status of all servers is reconciled with a single
+ * container listing, and that status updates skipped during an operation are
+ * not lost.
+ */
+class ServerServiceStatusTest {
+
+    @Test
+    void statusIsReconciledFromSingleListing() {
+        final Server running = server(ServerStatusType.OFFLINE, "a");
+        final Server stopped = server(ServerStatusType.ONLINE, "b");
+        final Server missing = server(ServerStatusType.ONLINE, null);
+        final Server legacy = server(ServerStatusType.OFFLINE, "d");
+
+        final ServerRepository serverRepo = mock(ServerRepository.class);
+        when(serverRepo.findAll()).thenReturn(List.of(running, stopped, missing, legacy));
+        final ContainerService containerService = mock(ContainerService.class);
+        when(containerService.getRunningStates()).thenReturn(Map.of(running.getId(), true, stopped.getId(), false));
+        when(containerService.isRunning(legacy)).thenReturn(true);
+
+        final ServerService serverService = new ServerService(mock(ConfigRepository.class), serverRepo,
+                mock(FileService.class), containerService, mock(UserService.class), mock(RequestEntityCache.class),
+                new ServerLockManager(new SimpleMeterRegistry()));
+        serverService.updateStatus();
+
+        assertEquals(ServerStatusType.ONLINE, running.getStatus());
+        assertEquals(ServerStatusType.OFFLINE, stopped.getStatus());
+        assertEquals(ServerStatusType.OFFLINE, missing.getStatus());
+        assertEquals(ServerStatusType.ONLINE, legacy.getStatus());
+        verify(containerService, times(1)).getRunningStates();
+        verify(containerService, times(1)).isRunning(any());
+    }
+
+    @Test
+    void skippedStatusUpdateIsAppliedAfterOperation() throws Exception {
+        final Server server = server(ServerStatusType.OFFLINE, "a");
+        final ServerRepository serverRepo = mock(ServerRepository.class);
+        when(serverRepo.findById(server.getId())).thenReturn(Optional.of(server));
+        final ContainerService containerService = mock(ContainerService.class);
+        when(containerService.isRunning(server)).thenReturn(true);
+
+        final ServerService serverService = new ServerService(mock(ConfigRepository.class), serverRepo,
+                mock(FileService.class), containerService, mock(UserService.class), mock(RequestEntityCache.class),
+                new ServerLockManager(new SimpleMeterRegistry()));
+        // The start event arrives while the server is still locked
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> serverService.updateStatus(server.getId(), ServerStatusType.ONLINE))
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals(ServerStatusType.OFFLINE, server.getStatus());
+            return null;
+        }).when(containerService).startContainer(server);
+
+        serverService.start(server.getId());
+
+        assertEquals(ServerStatusType.ONLINE, server.getStatus());
+    }
+
+    private static Server server(ServerStatusType status, String containerId) {
+        final Server server = new Server();
+        ReflectionTestUtils.setField(server, "id", UUID.randomUUID());
+        server.setStatus(status);
+        server.setContainerId(containerId);
+        return server;
+    }
+}
@@ -0,0 +1,145 @@
+package de.unibremen.swt.see.manager.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.unibremen.swt.see.manager.model.File;
+import de.unibremen.swt.see.manager.model.ProjectType;
+import de.unibremen.swt.see.manager.model.Server;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Verifies the resumable upload protocol.
+ */
+class UploadServiceTest {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6};
+
+    @TempDir
+    private Path root;
+
+    private FileService fileService;
+
+    private UploadService uploadService;
+
+    private final Server server = new Server();
+
+    /**
+     * Content and digest passed to the file service by the last call.
+     */
+    private final AtomicReference<byte[]> created = new AtomicReference<>();
+
+    private final AtomicReference<byte[]> createdDigest = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(server, "id", UUID.randomUUID());
+        final ServerService serverService = mock(ServerService.class);
+        when(serverService.get(server.getId())).thenReturn(server);
+        fileService = mock(FileService.class);
+        when(fileService.create(eq(server), any(), any(), any(), any(Path.class), any())).thenAnswer(invocation -> {
+            created.set(Files.readAllBytes(invocation.getArgument(4, Path.class)));
+            createdDigest.set(invocation.getArgument(5, MessageDigest.class).digest());
+            return new File();
+        });
+
+        final BlobStore blobStore = new BlobStore();
+        ReflectionTestUtils.setField(blobStore, "fileStorageRoot", root.toString());
+        uploadService = new UploadService(serverService, fileService, blobStore);
+        ReflectionTestUtils.setField(uploadService, "sessionExpirationMs", 60000L);
+    }
+
+    @Test
+    void chunkWithWrongOffsetIsRejected() throws Exception {
+        final UUID id = create((long) CONTENT.length);
+        uploadService.writeChunk(id, 0, new ByteArrayInputStream(CONTENT, 0, 3));
+
+        assertThrows(IllegalStateException.class, () -> uploadService.writeChunk(id, 0, chunk(0)));
+        assertThrows(IllegalStateException.class, () -> uploadService.writeChunk(id, 4, chunk(4)));
+        assertEquals(3, uploadService.get(id).getOffset());
+    }
+
+    @Test
+    void interruptedChunkCanBeResumed() throws Exception {
+        final UUID id = create((long) CONTENT.length);
+        final InputStream interrupted = new ByteArrayInputStream(CONTENT, 0, 2) {
+            @Override
+            public int read(byte[] b) throws IOException {
+                final int read = super.read(b);
+                if (read < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+        };
+
+        assertThrows(IOException.class, () -> uploadService.writeChunk(id, 0, interrupted));
+        assertEquals(2, uploadService.get(id).getOffset());
+        uploadService.writeChunk(id, 2, chunk(2));
+        uploadService.finish(id);
+
+        assertArrayEquals(CONTENT, created.get());
+        assertArrayEquals(FileService.newDigest().digest(CONTENT), createdDigest.get());
+    }
+
+    @Test
+    void chunkExceedingAnnouncedSizeIsRejected() throws Exception {
+        final UUID id = create(4L);
+
+        assertThrows(IllegalStateException.class, () -> uploadService.writeChunk(id, 0, chunk(0)));
+        assertEquals(0, uploadService.get(id).getOffset());
+        assertThrows(IllegalStateException.class, () -> uploadService.finish(id));
+    }
+
+    @Test
+    void failedFinishCanBeRetried() throws Exception {
+        final UUID id = create(null);
+        uploadService.writeChunk(id, 0, chunk(0));
+        final File file = new File();
+        when(fileService.create(eq(server), any(), any(), any(), any(Path.class), any()))
+                .thenThrow(new IOException("Disk full"))
+                .thenAnswer(invocation -> {
+                    createdDigest.set(invocation.getArgument(5, MessageDigest.class).digest());
+                    return file;
+                });
+
+        assertThrows(IOException.class, () -> uploadService.finish(id));
+        assertThrows(IllegalStateException.class, () -> uploadService.writeChunk(id, CONTENT.length, chunk(0)));
+        assertSame(file, uploadService.finish(id));
+
+        assertArrayEquals(FileService.newDigest().digest(CONTENT), createdDigest.get());
+        assertNull(uploadService.get(id));
+    }
+
+    @Test
+    void uploadIsRefusedInClusterMode() {
+        ReflectionTestUtils.setField(uploadService, "clusterEnabled", true);
+        assertThrows(UnsupportedOperationException.class, () -> create(null));
+    }
+
+    private UUID create(Long size) throws Exception {
+        return uploadService.create(server.getId(), ProjectType.values()[0].name(), "test.bin", null, size).getId();
+    }
+
+    private static InputStream chunk(int offset) {
+        return new ByteArrayInputStream(CONTENT, offset, CONTENT.length - offset);
+    }
+}
@@ -1,6 +1,6 @@
 import { createContext, ReactNode, useEffect, useState } from 'react'
 import User from '../types/User';
-import axios, { AxiosInstance } from 'axios';
+import axios, { AxiosError, AxiosInstance, InternalAxiosRequestConfig } from 'axios';
 import AppUtils from '../utils/AppUtils';
 
 const axiosInstance = axios.create({
@@ -9,6 +9,22 @@ const axiosInstance = axios.create({
   withCredentials: true
 });
 
+// Requests that must not trigger a token refresh when they fail with 401
+const NO_REFRESH_URLS = ["/user/signin", "/user/signout", "/user/refresh"];
+
+// Pending refresh shared by all requests that failed concurrently,
+// as each refresh token can only be used once
+let refreshRequest: Promise<void> | null = null;
+
+function refreshTokens(): Promise<void> {
+  if (!refreshRequest) {
+    refreshRequest = axiosInstance.post("/user/refresh")
+      .then(() => { })
+      .finally(() => { refreshRequest = null; });
+  }
+  return refreshRequest;
+}
+
 interface IAuthContext {
   user: User | null;
   setUser: (newState: User | null) => void;
@@ -26,6 +42,31 @@ const AuthContext = createContext<IAuthContext>(initialValue);
 const AuthProvider = ({ children }: { children?: ReactNode }) => {
   const [user, setUser] = useState<User | null>(initialValue.user);
 
+  // Exchanges the refresh token for a new access token once the access token
+  // has expired, and retries the failed request
+  useEffect(() => {
+    const interceptor = axiosInstance.interceptors.response.use(
+      (response) => response,
+      async (error: AxiosError) => {
+        const request = error.config as (InternalAxiosRequestConfig & { _retried?: boolean }) | undefined;
+        if (error.response?.status !== 401 || !request || request._retried
+          || NO_REFRESH_URLS.some((url) => request.url?.endsWith(url))) {
+          return Promise.reject(error);
+        }
+        request._retried = true;
+        try {
+          await refreshTokens();
+        } catch {
+          setUser(null);
+          sessionStorage.setItem("username", "");
+          return Promise.reject(error);
+        }
+        return axiosInstance(request);
+      }
+    );
+    return () => axiosInstance.interceptors.response.eject(interceptor);
+  }, []);
+
   useEffect(() => {
     if (!user && sessionStorage.getItem('username')) {
       axiosInstance.get(`/user/me`).then(
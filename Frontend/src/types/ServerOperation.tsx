@@ -0,0 +1,12 @@
+type ServerOperation = {
+  id: string;
+  serverId: string;
+  type: "START" | "STOP" | "DELETE";
+  status: "QUEUED" | "RUNNING" | "SUCCEEDED" | "FAILED";
+  message: string | null;
+  creationTime: number;
+  finishTime: number | null;
+  finished: boolean;
+}
+
+export default ServerOperation
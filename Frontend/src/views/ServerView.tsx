@@ -4,14 +4,15 @@ import { FontAwesomeIcon } from "@fortawesome/react-fontawesome";
 import { faArrowLeft, faDownload, faEye, faPlay, faStop, faClipboard, faTrash } from "@fortawesome/free-solid-svg-icons";
 import { grey } from "@mui/material/colors";
 import Avatar from "../components/Avatar";
-import { useContext, useEffect, useState } from "react";
+import { useContext, useEffect, useRef, useState } from "react";
 import { useLocation, useNavigate } from "react-router";
 import Server from "../types/Server";
 import { AuthContext } from "../contexts/AuthContext";
 import SeeFile from "../types/SeeFile";
+import ServerOperation from "../types/ServerOperation";
 import { ProjectTypeUtils } from "../types/ProjectType";
 import { enqueueSnackbar } from "notistack";
-import { AxiosError } from "axios";
+import axios, { AxiosError, CanceledError } from "axios";
 import AppUtils from "../utils/AppUtils";
 
 function getServerStatus(serverStatus: string) {
@@ -25,6 +26,12 @@ function getServerStatus(serverStatus: string) {
   }
 }
 
+/** Interval between two polls of the progress of a server operation. */
+const OPERATION_POLL_INTERVAL_MS = 1000;
+
+/** Time after which waiting for a server operation is given up. */
+const OPERATION_MAX_WAIT_MS = 5 * 60 * 1000;
+
 const modalStyle = {
   position: 'absolute',
   top: '50%',
@@ -50,38 +57,64 @@ function ServerView() {
   const [isBusy, setIsBusy] = useState(false);
   const [showDeleteServerModal, setShowDeleteServerModal] = useState(false);
   const [showPassword, setShowPassword] = useState(false);
+  const operationAbort = useRef<AbortController | undefined>(undefined);
+
+  async function awaitOperation(operation: ServerOperation): Promise<ServerOperation> {
+    const signal = operationAbort.current?.signal;
+    const deadline = Date.now() + OPERATION_MAX_WAIT_MS;
+    while (!operation.finished) {
+      if (Date.now() >= deadline) {
+        throw new Error("The operation takes too long. Please check the server status later.");
+      }
+      await new Promise((resolve) => setTimeout(resolve, OPERATION_POLL_INTERVAL_MS));
+      if (signal?.aborted) {
+        throw new CanceledError();
+      }
+      operation = (await axiosInstance.get("/server/operation", { params: { id: operation.id }, signal })).data;
+    }
+    if (operation.status === "FAILED") {
+      throw new Error(operation.message ?? "Operation failed.");
+    }
+    return operation;
+  }
 
   async function startServer() {
     if (!server) return;
     setIsBusy(true);
-    await axiosInstance.post("/server/start", {}, { params: { id: server.id }, timeout: 30000 }).then(
+    await axiosInstance.post("/server/start", {}, { params: { id: server.id } }).then(
+      (response) => awaitOperation(response.data)
+    ).then(
       () => axiosInstance.get(`/server/`, { params: { id: server.id } })
     ).then(
       (response) => setServer(response.data)
     ).catch(
-      (error) => AppUtils.notifyAxiosError(error, "Error Starting Server")
+      (error) => axios.isCancel(error) || AppUtils.notifyAxiosError(error, "Error Starting Server")
     ).finally(() => setIsBusy(false));
   }
 
   async function stopServer() {
     if (!server) return;
     setIsBusy(true);
-    await axiosInstance.post("/server/stop", {}, { params: { id: server?.id }, timeout: 30000 }).then(
+    await axiosInstance.post("/server/stop", {}, { params: { id: server?.id } }).then(
+      (response) => awaitOperation(response.data)
+    ).then(
       () => axiosInstance.get(`/server/`, { params: { id: server.id } })
     ).then(
       (response) => setServer(response.data)
     ).catch(
-      (error) => AppUtils.notifyAxiosError(error as AxiosError, "Error Stopping Server")
+      (error) => axios.isCancel(error) || AppUtils.notifyAxiosError(error as AxiosError, "Error Stopping Server")
     ).finally(() => setIsBusy(false));
   }
 
   async function deleteServer() {
     if (!server) return;
     setIsBusy(true);
-    await axiosInstance.delete("/server/delete", { params: { id: server.id }, timeout: 30000 }).then(
+    await axiosInstance.delete("/server/delete", { params: { id: server.id } }).then(
+      (response) => awaitOperation(response.data)
+    ).then(
       () => navigate("/", { replace: true })
     ).catch(
-      (error) => AppUtils.notifyAxiosError(error as AxiosError, "Error Deleting Server")
+      (error) => axios.isCancel(error) || AppUtils.notifyAxiosError(error as AxiosError, "Error Deleting Server")
     ).finally(() => setIsBusy(false));
   }
 
@@ -100,6 +133,12 @@ function ServerView() {
     );
   }
 
+  useEffect(() => {
+    const controller = new AbortController();
+    operationAbort.current = controller;
+    return () => controller.abort();
+  }, []);
+
   useEffect(() => {
     refreshData();
     const refreshInterval = setInterval(() => refreshData(), 10000);